@@ -0,0 +1,229 @@
+package com.example.photogallery;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.viewpager2.widget.ViewPager2;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 全局后台任务调度器，按优先级分为几条通道：
+ * 前台（可见页面解码、前台查询） > 预加载 > 文件修改（复制、删除） > 后台（索引、哈希、缩略图预热）
+ * 用户滑动时自动暂停低优先级通道，停止滑动后恢复
+ */
+public class AppExecutors {
+    public static final int LANE_FOREGROUND = 0;
+    public static final int LANE_PREFETCH = 1;
+    public static final int LANE_MUTATION = 2;
+    public static final int LANE_BACKGROUND = 3;
+
+    // 滑动状态没有正常结束时（例如界面被销毁），最多暂停这么久
+    private static final long MAX_PAUSE_MS = 3000;
+
+    private static AppExecutors instance;
+
+    private final LaneExecutor[] lanes;
+    // 单独的写日志线程，不受滑动暂停影响，也不和文件修改任务排队
+    private final LaneExecutor journalThread;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Executor mainThread = mainHandler::post;
+
+    private final ReentrantLock pauseLock = new ReentrantLock();
+    private final Condition unpaused = pauseLock.newCondition();
+    private boolean paused = false;
+    private long lastScrollSignal = 0;
+
+    private AppExecutors() {
+        int cores = Math.max(1, Runtime.getRuntime().availableProcessors());
+        lanes = new LaneExecutor[] {
+                new LaneExecutor("fg", Math.max(2, Math.min(4, cores / 2)),
+                        Process.THREAD_PRIORITY_DEFAULT, false),
+                new LaneExecutor("prefetch", Math.max(1, cores / 4),
+                        Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_MORE_FAVORABLE, false),
+                new LaneExecutor("mutation", 2,
+                        Process.THREAD_PRIORITY_BACKGROUND, true),
+                new LaneExecutor("background", Math.max(1, cores / 4),
+                        Process.THREAD_PRIORITY_LOWEST, true)
+        };
+        journalThread = new LaneExecutor("journal", 1, Process.THREAD_PRIORITY_DEFAULT, false);
+    }
+
+    public static synchronized AppExecutors getInstance() {
+        if (instance == null) {
+            instance = new AppExecutors();
+        }
+        return instance;
+    }
+
+    public void execute(int lane, Runnable task) {
+        lanes[lane].execute(task);
+    }
+
+    public Executor lane(int lane) {
+        return lanes[lane];
+    }
+
+    public Executor mainThread() {
+        return mainThread;
+    }
+
+    /**
+     * 写入崩溃恢复日志用的串行执行器（单线程，按提交顺序执行，滑动时不暂停）
+     * 只用于很短的追加写入，保证操作发生后尽快落盘
+     */
+    public Executor journal() {
+        return journalThread;
+    }
+
+    /**
+     * 创建按提交顺序串行执行的执行器，任务实际运行在指定通道上
+     */
+    public Executor newSerialExecutor(int lane) {
+        return new SerialExecutor(lanes[lane]);
+    }
+
+    /**
+     * 创建一个有固定线程数的临时工作池（后台优先级，滑动时暂停），用于可以按核数并行的批量计算
+     * 用完后由调用方 shutdown
+     */
+    public ExecutorService newWorkerPool(String name, int threads) {
+        return new LaneExecutor(name, threads, Process.THREAD_PRIORITY_BACKGROUND, true);
+    }
+
+    /**
+     * 用户开始或结束滑动
+     */
+    public void setUserScrolling(boolean scrolling) {
+        pauseLock.lock();
+        try {
+            paused = scrolling;
+            lastScrollSignal = SystemClock.uptimeMillis();
+            if (!scrolling) {
+                unpaused.signalAll();
+            }
+        } finally {
+            pauseLock.unlock();
+        }
+    }
+
+    /**
+     * 低优先级通道在执行每个任务前等待滑动结束
+     */
+    private void awaitUnpaused() {
+        pauseLock.lock();
+        try {
+            while (paused) {
+                long remaining = lastScrollSignal + MAX_PAUSE_MS - SystemClock.uptimeMillis();
+                if (remaining <= 0) {
+                    paused = false;
+                    break;
+                }
+                unpaused.await(remaining, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pauseLock.unlock();
+        }
+    }
+
+    /**
+     * RecyclerView滑动时暂停低优先级通道
+     */
+    public static class PauseOnScrollListener extends RecyclerView.OnScrollListener {
+        @Override
+        public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+            getInstance().setUserScrolling(newState != RecyclerView.SCROLL_STATE_IDLE);
+        }
+    }
+
+    /**
+     * ViewPager2滑动时暂停低优先级通道
+     */
+    public static class PauseOnSwipeCallback extends ViewPager2.OnPageChangeCallback {
+        @Override
+        public void onPageScrollStateChanged(int state) {
+            getInstance().setUserScrolling(state != ViewPager2.SCROLL_STATE_IDLE);
+        }
+    }
+
+    private class LaneExecutor extends ThreadPoolExecutor {
+        private final boolean pausable;
+
+        LaneExecutor(String name, int threads, int threadPriority, boolean pausable) {
+            super(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    new LaneThreadFactory(name, threadPriority));
+            allowCoreThreadTimeOut(true);
+            this.pausable = pausable;
+        }
+
+        @Override
+        protected void beforeExecute(Thread t, Runnable r) {
+            super.beforeExecute(t, r);
+            if (pausable) {
+                awaitUnpaused();
+            }
+        }
+    }
+
+    private static class LaneThreadFactory implements ThreadFactory {
+        private final String name;
+        private final int threadPriority;
+        private final AtomicInteger count = new AtomicInteger();
+
+        LaneThreadFactory(String name, int threadPriority) {
+            this.name = name;
+            this.threadPriority = threadPriority;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable r) {
+            return new Thread(() -> {
+                Process.setThreadPriority(threadPriority);
+                r.run();
+            }, "app-" + name + "-" + count.incrementAndGet());
+        }
+    }
+
+    private static class SerialExecutor implements Executor {
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private final Executor executor;
+        private Runnable active;
+
+        SerialExecutor(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public synchronized void execute(@NonNull Runnable r) {
+            tasks.offer(() -> {
+                try {
+                    r.run();
+                } finally {
+                    scheduleNext();
+                }
+            });
+            if (active == null) {
+                scheduleNext();
+            }
+        }
+
+        private synchronized void scheduleNext() {
+            if ((active = tasks.poll()) != null) {
+                executor.execute(active);
+            }
+        }
+    }
+}
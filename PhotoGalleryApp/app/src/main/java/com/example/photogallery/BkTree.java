@@ -0,0 +1,95 @@
+package com.example.photogallery;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按64位哈希的汉明距离组织的BK树，用于查找距离不超过半径的所有哈希
+ * 查询时只需要访问与目标距离在 [d - r, d + r] 之间的子树
+ * 不支持删除：调用方过滤已删除的ID，删除过多时重建
+ */
+public class BkTree {
+    private static class Node {
+        final long hash;
+        // 同一个哈希的所有媒体
+        final List<Long> mediaIds = new ArrayList<>(1);
+        // 到子节点的距离 -> 子节点
+        Map<Integer, Node> children;
+
+        Node(long hash) {
+            this.hash = hash;
+        }
+    }
+
+    private Node root;
+    private int size;
+
+    public void add(long hash, long mediaId) {
+        size++;
+        if (root == null) {
+            root = new Node(hash);
+            root.mediaIds.add(mediaId);
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int distance = distance(node.hash, hash);
+            if (distance == 0) {
+                node.mediaIds.add(mediaId);
+                return;
+            }
+            if (node.children == null) {
+                node.children = new HashMap<>(4);
+            }
+            Node child = node.children.get(distance);
+            if (child == null) {
+                child = new Node(hash);
+                child.mediaIds.add(mediaId);
+                node.children.put(distance, child);
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * 查找与hash的汉明距离不超过radius的所有媒体ID
+     */
+    public List<Long> search(long hash, int radius) {
+        List<Long> result = new ArrayList<>();
+        if (root == null) {
+            return result;
+        }
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            int distance = distance(node.hash, hash);
+            if (distance <= radius) {
+                result.addAll(node.mediaIds);
+            }
+            if (node.children == null) {
+                continue;
+            }
+            // 三角不等式：只有这些子树中可能有距离不超过radius的节点
+            for (Map.Entry<Integer, Node> entry : node.children.entrySet()) {
+                int childDistance = entry.getKey();
+                if (childDistance >= distance - radius && childDistance <= distance + radius) {
+                    stack.push(entry.getValue());
+                }
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
@@ -0,0 +1,380 @@
+package com.example.photogallery;
+
+import android.app.Activity;
+import android.app.PendingIntent;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.MediaStore;
+import android.util.Log;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.IntentSenderRequest;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AppCompatActivity;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 批量修改媒体文件（删除、移到回收站、从回收站恢复）
+ * Android 11+：按块生成删除/回收站请求，每块一次用户确认，避免Uri列表超过Binder事务大小限制
+ * Android 10及以下：每个媒体集合用一条 _id IN (...) 语句删除，在后台线程执行
+ * 结果按媒体ID报告成功和失败
+ *
+ * 需要在Activity的onCreate中创建（内部会注册ActivityResultLauncher）
+ */
+public class BulkMediaMutator {
+    private static final String TAG = "BulkMediaMutator";
+    // 每个删除请求最多包含的Uri数量
+    private static final int REQUEST_CHUNK_SIZE = 500;
+    // 每条SQL语句最多包含的参数数量（SQLite上限为999）
+    private static final int SQL_CHUNK_SIZE = 500;
+
+    private static final int OP_DELETE = 0;
+    private static final int OP_TRASH = 1;
+    private static final int OP_UNTRASH = 2;
+
+    public interface Callback {
+        void onComplete(Result result);
+    }
+
+    public static class Result {
+        private final List<Long> succeededIds = new ArrayList<>();
+        private final List<Long> failedIds = new ArrayList<>();
+        private boolean cancelled = false;
+
+        public List<Long> getSucceededIds() {
+            return succeededIds;
+        }
+
+        public List<Long> getFailedIds() {
+            return failedIds;
+        }
+
+        /**
+         * 从提交的媒体中挑出成功的
+         */
+        public List<Photo> filterSucceeded(List<Photo> photos) {
+            Set<Long> idSet = new HashSet<>(succeededIds);
+            List<Photo> matched = new ArrayList<>();
+            for (Photo photo : photos) {
+                if (idSet.contains(photo.getId())) {
+                    matched.add(photo);
+                }
+            }
+            return matched;
+        }
+
+        /**
+         * 用户是否在确认对话框中取消了（之前已确认的块仍然生效）
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final AppCompatActivity activity;
+    private final ContentResolver resolver;
+    private final ActivityResultLauncher<IntentSenderRequest> confirmLauncher;
+
+    // 当前批次的状态，只在主线程访问
+    private Callback callback;
+    private Result result;
+    private int operation;
+    private List<List<Photo>> chunks;
+    private int chunkIndex;
+
+    public BulkMediaMutator(AppCompatActivity activity) {
+        this.activity = activity;
+        this.resolver = activity.getContentResolver();
+        this.confirmLauncher = activity.registerForActivityResult(
+                new ActivityResultContracts.StartIntentSenderForResult(),
+                r -> onChunkConfirmed(r.getResultCode() == Activity.RESULT_OK)
+        );
+    }
+
+    public boolean isRunning() {
+        return callback != null;
+    }
+
+    /**
+     * 系统是否支持回收站（Android 11+）
+     */
+    public static boolean isTrashSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R;
+    }
+
+    /**
+     * 批量永久删除，完成后在主线程回调
+     */
+    public void delete(List<Photo> photos, Callback callback) {
+        start(OP_DELETE, photos, callback);
+    }
+
+    /**
+     * 批量移到系统回收站，完成后在主线程回调
+     * 不支持回收站的系统上改为永久删除
+     */
+    public void trash(List<Photo> photos, Callback callback) {
+        start(isTrashSupported() ? OP_TRASH : OP_DELETE, photos, callback);
+    }
+
+    /**
+     * 批量从系统回收站恢复，完成后在主线程回调
+     */
+    public void untrash(List<Photo> photos, Callback callback) {
+        start(OP_UNTRASH, photos, callback);
+    }
+
+    private void start(int operation, List<Photo> photos, Callback callback) {
+        if (this.callback != null) {
+            Log.w(TAG, "上一个批量操作还没有完成");
+            return;
+        }
+        this.callback = callback;
+        this.result = new Result();
+        this.operation = operation;
+
+        if (photos.isEmpty()) {
+            finish();
+            return;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            chunks = split(photos, REQUEST_CHUNK_SIZE);
+            chunkIndex = 0;
+            launchNextChunk();
+        } else if (operation == OP_UNTRASH) {
+            // 没有回收站，也就没有可恢复的文件
+            addIds(result.failedIds, photos);
+            finish();
+        } else {
+            final Result pending = result;
+            AppExecutors.getInstance().execute(AppExecutors.LANE_MUTATION, () -> {
+                deleteDirect(photos, pending);
+                AppExecutors.getInstance().mainThread().execute(this::finish);
+            });
+        }
+    }
+
+    /**
+     * Android 11+：在后台生成下一块的请求，然后在主线程请求用户确认
+     */
+    private void launchNextChunk() {
+        if (chunkIndex >= chunks.size()) {
+            finish();
+            return;
+        }
+        final List<Photo> chunk = chunks.get(chunkIndex);
+        AppExecutors.getInstance().execute(AppExecutors.LANE_MUTATION, () -> {
+            PendingIntent pendingIntent = null;
+            try {
+                pendingIntent = createRequest(toUris(chunk));
+            } catch (Exception e) {
+                Log.e(TAG, "创建请求失败: operation=" + operation, e);
+            }
+            final PendingIntent request = pendingIntent;
+            AppExecutors.getInstance().mainThread().execute(() -> {
+                if (request == null || activity.isDestroyed()) {
+                    addIds(result.failedIds, chunk);
+                    chunkIndex++;
+                    launchNextChunk();
+                    return;
+                }
+                confirmLauncher.launch(new IntentSenderRequest.Builder(request.getIntentSender()).build());
+            });
+        });
+    }
+
+    private PendingIntent createRequest(List<Uri> uris) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.R) {
+            return null;
+        }
+        switch (operation) {
+            case OP_TRASH:
+                return MediaStore.createTrashRequest(resolver, uris, true);
+            case OP_UNTRASH:
+                return MediaStore.createTrashRequest(resolver, uris, false);
+            default:
+                return MediaStore.createDeleteRequest(resolver, uris);
+        }
+    }
+
+    private void onChunkConfirmed(boolean confirmed) {
+        if (callback == null || chunks == null) {
+            return;
+        }
+        if (confirmed) {
+            addIds(result.succeededIds, chunks.get(chunkIndex));
+            chunkIndex++;
+            launchNextChunk();
+        } else {
+            // 用户取消：剩余的块都不再处理
+            result.cancelled = true;
+            for (int i = chunkIndex; i < chunks.size(); i++) {
+                addIds(result.failedIds, chunks.get(i));
+            }
+            finish();
+        }
+    }
+
+    /**
+     * Android 10及以下：每个集合每块一条DELETE语句，之后查询仍存在的ID作为失败项
+     */
+    private void deleteDirect(List<Photo> photos, Result out) {
+        List<Photo> images = new ArrayList<>();
+        List<Photo> videos = new ArrayList<>();
+        for (Photo photo : photos) {
+            (photo.isVideo() ? videos : images).add(photo);
+        }
+        deleteFromCollection(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, images, out);
+        deleteFromCollection(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, videos, out);
+    }
+
+    private void deleteFromCollection(Uri collection, List<Photo> photos, Result out) {
+        if (photos.isEmpty()) {
+            return;
+        }
+        for (List<Photo> chunk : split(photos, SQL_CHUNK_SIZE)) {
+            String selection = buildIdSelection(chunk.size());
+            String[] args = new String[chunk.size()];
+            for (int i = 0; i < chunk.size(); i++) {
+                args[i] = String.valueOf(chunk.get(i).getId());
+            }
+
+            try {
+                resolver.delete(collection, selection, args);
+            } catch (Exception e) {
+                // 整块删除失败（例如部分文件没有权限），逐个删除以确定失败项
+                Log.w(TAG, "批量删除失败，改为逐个删除: " + e.getMessage());
+                for (Photo photo : chunk) {
+                    try {
+                        resolver.delete(ContentUris.withAppendedId(collection, photo.getId()), null, null);
+                    } catch (Exception ignored) {
+                        // 在下面的查询中会被计为失败
+                    }
+                }
+            }
+
+            Set<Long> remaining = queryExistingIds(collection, selection, args);
+            for (Photo photo : chunk) {
+                if (remaining.contains(photo.getId())) {
+                    out.failedIds.add(photo.getId());
+                } else {
+                    out.succeededIds.add(photo.getId());
+                }
+            }
+        }
+    }
+
+    private Set<Long> queryExistingIds(Uri collection, String selection, String[] args) {
+        Set<Long> ids = new HashSet<>();
+        try (Cursor cursor = resolver.query(collection, new String[]{MediaStore.MediaColumns._ID},
+                selection, args, null)) {
+            if (cursor != null) {
+                while (cursor.moveToNext()) {
+                    ids.add(cursor.getLong(0));
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "查询删除结果失败", e);
+        }
+        return ids;
+    }
+
+    private void finish() {
+        Callback cb = callback;
+        Result r = result;
+        callback = null;
+        result = null;
+        chunks = null;
+        if (r != null && operation != OP_UNTRASH && !r.succeededIds.isEmpty()) {
+            // 已删除（或移到回收站）的文件从索引和媒体目录中移除；恢复的文件由调用方放回
+            if (operation == OP_DELETE) {
+                forgetDeleted(activity.getApplicationContext(), new ArrayList<>(r.succeededIds));
+            } else {
+                forgetRemoved(activity.getApplicationContext(), new ArrayList<>(r.succeededIds));
+            }
+        }
+        if (cb != null) {
+            cb.onComplete(r);
+        }
+    }
+
+    /**
+     * 已删除（或移到回收站）的媒体从索引、媒体目录和派生缓存中移除
+     */
+    static void forgetRemoved(Context context, List<Long> removedIds) {
+        if (removedIds.isEmpty()) {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        MediaIndex.getInstance(appContext).removeAll(removedIds);
+        AppExecutors.getInstance().execute(AppExecutors.LANE_BACKGROUND, () -> {
+            MediaCatalog.getInstance(appContext).removeAll(removedIds);
+            VideoPosterCache.getInstance(appContext).removeAll(removedIds);
+            ImageHashStore.getInstance(appContext).removeAll(removedIds);
+        });
+    }
+
+    /**
+     * 永久删除的媒体：除了 forgetRemoved，还清除显示日期覆盖（移到回收站的保留，恢复后还要用）
+     */
+    static void forgetDeleted(Context context, List<Long> deletedIds) {
+        forgetRemoved(context, deletedIds);
+        DisplayDateStore store = DisplayDateStore.getInstance(context);
+        MediaJobQueue jobQueue = MediaJobQueue.getInstance(context);
+        List<MediaJobQueue.Job> jobs = new ArrayList<>();
+        for (long id : deletedIds) {
+            if (store.getDisplayDay(id) != DisplayDateStore.NO_OVERRIDE || jobQueue.getPendingDisplayDay(id) != null) {
+                jobs.add(MediaJobQueue.Job.restoreDisplayDay(id, DisplayDateStore.NO_OVERRIDE));
+            }
+        }
+        jobQueue.enqueue(jobs);
+    }
+
+    public static Uri getContentUri(Photo photo) {
+        Uri collection = photo.isVideo()
+                ? MediaStore.Video.Media.EXTERNAL_CONTENT_URI
+                : MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
+        return ContentUris.withAppendedId(collection, photo.getId());
+    }
+
+    private static List<Uri> toUris(List<Photo> photos) {
+        List<Uri> uris = new ArrayList<>(photos.size());
+        for (Photo photo : photos) {
+            uris.add(getContentUri(photo));
+        }
+        return uris;
+    }
+
+    private static String buildIdSelection(int count) {
+        StringBuilder sb = new StringBuilder(MediaStore.MediaColumns._ID).append(" IN (");
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ",?");
+        }
+        return sb.append(')').toString();
+    }
+
+    private static void addIds(List<Long> target, List<Photo> photos) {
+        for (Photo photo : photos) {
+            target.add(photo.getId());
+        }
+    }
+
+    private static List<List<Photo>> split(List<Photo> photos, int size) {
+        if (photos.size() <= size) {
+            return Collections.singletonList(photos);
+        }
+        List<List<Photo>> result = new ArrayList<>();
+        for (int i = 0; i < photos.size(); i += size) {
+            result.add(new ArrayList<>(photos.subList(i, Math.min(i + size, photos.size()))));
+        }
+        return result;
+    }
+}
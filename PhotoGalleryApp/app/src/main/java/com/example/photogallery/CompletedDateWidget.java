@@ -1,75 +1,181 @@
 package com.example.photogallery;
 
+import android.app.AlarmManager;
+import android.app.PendingIntent;
 import android.appwidget.AppWidgetManager;
 import android.appwidget.AppWidgetProvider;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
+import android.os.Build;
 import android.util.Log;
+import android.view.View;
 import android.widget.RemoteViews;
 import java.text.SimpleDateFormat;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TimeZone;
 
 /**
- * 显示最近完成日期的桌面小部件
+ * 显示待处理数量的桌面小部件
+ * 数据来自 MediaIndex 写入的每日数量汇总，接收器内不查询媒体库
+ * 每天本地午夜刷新一次，使"已完成"状态按时失效
  */
 public class CompletedDateWidget extends AppWidgetProvider {
-    private static final String PREFS_NAME = "IconManagerPrefs";
+    private static final String TAG = "CompletedDateWidget";
+    private static final String ACTION_MIDNIGHT = "com.example.photogallery.action.WIDGET_MIDNIGHT";
+    // 不允许精确闹钟时，允许在午夜后这么久内触发
+    private static final long INEXACT_WINDOW_MS = 10 * 60 * 1000;
+    // 内容描述中最多列出的天数
+    private static final int MAX_DESCRIBED_DAYS = 5;
 
     @Override
     public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
-        // 更新所有的widget实例
+        // 汇总只读一次，所有widget实例共用
+        RemoteViews views = buildViews(context);
         for (int appWidgetId : appWidgetIds) {
-            updateAppWidget(context, appWidgetManager, appWidgetId);
+            appWidgetManager.updateAppWidget(appWidgetId, views);
         }
+        scheduleMidnightRefresh(context);
     }
 
-    /**
-     * 更新单个widget
-     */
-    static void updateAppWidget(Context context, AppWidgetManager appWidgetManager, int appWidgetId) {
-        // 获取保存的完成状态和完成日期
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        boolean isCompleted = prefs.getBoolean("is_completed", false);
-        String completedDate = prefs.getString("completed_date", "");
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        if (ACTION_MIDNIGHT.equals(action)
+                || Intent.ACTION_TIME_CHANGED.equals(action)
+                || Intent.ACTION_TIMEZONE_CHANGED.equals(action)) {
+            Log.d(TAG, "日期变化，刷新小部件: " + action);
+            updateAllWidgets(context);
+            scheduleMidnightRefresh(context);
+            return;
+        }
+        super.onReceive(context, intent);
+    }
 
-        // 获取当天日期（格式: MM/dd）
-        SimpleDateFormat sdf = new SimpleDateFormat("MM/dd", Locale.getDefault());
-        String todayDate = sdf.format(new Date());
+    @Override
+    public void onDisabled(Context context) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager != null) {
+            alarmManager.cancel(getMidnightIntent(context));
+        }
+    }
 
-        // 验证完成日期是否是今天
-        // 如果保存的日期不是今天，说明状态已过期，应显示为未完成
-        boolean isValidCompleted = isCompleted && completedDate.equals(todayDate);
+    /**
+     * 根据汇总构建小部件视图
+     */
+    static RemoteViews buildViews(Context context) {
+        String encoded = context.getSharedPreferences(MediaIndex.AGGREGATE_PREFS, Context.MODE_PRIVATE)
+                .getString(MediaIndex.KEY_DAY_COUNTS, null);
+        long today = PhotoManager.getTodayEpochDay();
+        SortedMap<Long, Integer> overdue = MediaIndex.decodeDayCounts(encoded).headMap(today + 1);
 
-        Log.d("CompletedDateWidget", "更新widget - 完成状态: " + isCompleted +
-              ", 保存的日期: " + completedDate + ", 今天日期: " + todayDate +
-              ", 有效完成状态: " + isValidCompleted);
+        int overdueCount = 0;
+        for (int count : overdue.values()) {
+            overdueCount += count;
+        }
 
-        // 构建widget的RemoteViews
         RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_completed_date);
 
-        if (isValidCompleted) {
-            // 已完成且日期是今天：显示已完成图标 + 保存的日期
+        // 还没有汇总（应用从未打开过）时按未完成显示
+        if (encoded != null && overdueCount == 0) {
+            // 已完成：显示已完成图标 + 今天的日期
             views.setImageViewResource(R.id.widget_icon, R.drawable.ywc);
-            views.setTextViewText(R.id.widget_date_text, completedDate);
-            views.setViewVisibility(R.id.widget_date_text, android.view.View.VISIBLE);
+            views.setTextViewText(R.id.widget_date_text, formatShortDate(today));
+            views.setViewVisibility(R.id.widget_date_text, View.VISIBLE);
+            views.setViewVisibility(R.id.widget_count_text, View.GONE);
+            views.setContentDescription(R.id.widget_root, "今天已完成");
         } else {
-            // 未完成或日期已过期：只显示默认图标，不显示日期
+            // 未完成：默认图标 + 待处理总数，底部显示最早一天及其数量
             views.setImageViewResource(R.id.widget_icon, R.drawable.a2048x2048);
-            views.setViewVisibility(R.id.widget_date_text, android.view.View.GONE);
+            if (overdueCount > 0) {
+                long earliest = overdue.firstKey();
+                views.setTextViewText(R.id.widget_count_text, String.valueOf(overdueCount));
+                views.setViewVisibility(R.id.widget_count_text, View.VISIBLE);
+                views.setTextViewText(R.id.widget_date_text,
+                        formatShortDate(earliest) + " ×" + overdue.get(earliest));
+                views.setViewVisibility(R.id.widget_date_text, View.VISIBLE);
+            } else {
+                views.setViewVisibility(R.id.widget_count_text, View.GONE);
+                views.setViewVisibility(R.id.widget_date_text, View.GONE);
+            }
+            views.setContentDescription(R.id.widget_root, describe(overdue, overdueCount));
         }
 
+        Log.d(TAG, "更新widget - 待处理: " + overdueCount + ", 天数: " + overdue.size());
+
         // 设置点击事件 - 点击widget打开应用
         Intent intent = new Intent(context, MainActivity.class);
-        android.app.PendingIntent pendingIntent = android.app.PendingIntent.getActivity(
-            context, 0, intent, android.app.PendingIntent.FLAG_UPDATE_CURRENT | android.app.PendingIntent.FLAG_IMMUTABLE
+        PendingIntent pendingIntent = PendingIntent.getActivity(
+            context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
         views.setOnClickPendingIntent(R.id.widget_root, pendingIntent);
+        return views;
+    }
 
-        // 更新widget
-        appWidgetManager.updateAppWidget(appWidgetId, views);
+    /**
+     * 每天的待处理数量，例如 "待处理 12：10/15 3，10/16 9"
+     */
+    private static String describe(SortedMap<Long, Integer> overdue, int total) {
+        StringBuilder sb = new StringBuilder("待处理 ").append(total);
+        int described = 0;
+        for (Map.Entry<Long, Integer> entry : overdue.entrySet()) {
+            if (described == MAX_DESCRIBED_DAYS) {
+                sb.append("…");
+                break;
+            }
+            sb.append(described == 0 ? "：" : "，")
+                    .append(formatShortDate(entry.getKey())).append(' ').append(entry.getValue());
+            described++;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 将epoch-day格式化为 MM/dd
+     */
+    private static String formatShortDate(long epochDay) {
+        SimpleDateFormat sdf = new SimpleDateFormat("MM/dd", Locale.getDefault());
+        sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return sdf.format(new Date(epochDay * 24L * 60 * 60 * 1000));
+    }
+
+    /**
+     * 在下一个本地午夜刷新一次
+     * Android 12+没有精确闹钟权限时退回到一个小时间窗口内触发
+     */
+    static void scheduleMidnightRefresh(Context context) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager == null) {
+            return;
+        }
+
+        Calendar midnight = Calendar.getInstance();
+        midnight.set(Calendar.HOUR_OF_DAY, 0);
+        midnight.set(Calendar.MINUTE, 0);
+        midnight.set(Calendar.SECOND, 0);
+        midnight.set(Calendar.MILLISECOND, 0);
+        midnight.add(Calendar.DAY_OF_YEAR, 1);
+        long triggerAt = midnight.getTimeInMillis();
+
+        PendingIntent pendingIntent = getMidnightIntent(context);
+        // 不唤醒设备：息屏时错过的刷新会在设备唤醒后立即执行
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S || alarmManager.canScheduleExactAlarms()) {
+            alarmManager.setExact(AlarmManager.RTC, triggerAt, pendingIntent);
+        } else {
+            alarmManager.setWindow(AlarmManager.RTC, triggerAt, INEXACT_WINDOW_MS, pendingIntent);
+        }
+        Log.d(TAG, "已安排午夜刷新: " + midnight.getTime());
+    }
+
+    private static PendingIntent getMidnightIntent(Context context) {
+        Intent intent = new Intent(context, CompletedDateWidget.class);
+        intent.setAction(ACTION_MIDNIGHT);
+        return PendingIntent.getBroadcast(context, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
     }
 
     /**
@@ -81,15 +187,15 @@ public class CompletedDateWidget extends AppWidgetProvider {
             ComponentName thisWidget = new ComponentName(context, CompletedDateWidget.class);
             int[] appWidgetIds = appWidgetManager.getAppWidgetIds(thisWidget);
 
-            Log.d("CompletedDateWidget", "更新小部件，数量: " + appWidgetIds.length);
+            Log.d(TAG, "更新小部件，数量: " + appWidgetIds.length);
+            if (appWidgetIds.length == 0) {
+                return;
+            }
 
             // 直接调用更新方法，不使用广播（避免被小米系统拦截）
-            for (int appWidgetId : appWidgetIds) {
-                updateAppWidget(context, appWidgetManager, appWidgetId);
-                Log.d("CompletedDateWidget", "已更新widget ID: " + appWidgetId);
-            }
+            appWidgetManager.updateAppWidget(appWidgetIds, buildViews(context));
         } catch (Exception e) {
-            Log.e("CompletedDateWidget", "更新小部件失败: " + e.getMessage());
+            Log.e(TAG, "更新小部件失败: " + e.getMessage());
             e.printStackTrace();
         }
     }
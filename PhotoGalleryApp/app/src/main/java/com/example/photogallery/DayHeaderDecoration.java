@@ -0,0 +1,155 @@
+package com.example.photogallery;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.TypedValue;
+import android.view.View;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * 网格中的日期分组标题（不增加列表项，不影响 PhotoAdapter 的位置和选择逻辑）
+ * 包含分组起点的行上方留出标题栏，在分组起点所在的列绘制日期；顶部固定显示当前分组的日期，
+ * 下一个分组的标题到达时被推上去
+ * 标题文字在设置索引时一次生成，滚动时按位置查表，O(1)
+ */
+public class DayHeaderDecoration extends RecyclerView.ItemDecoration {
+    private final int headerHeight;
+    private final int textPadding;
+    private final Paint backgroundPaint = new Paint();
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    private SectionIndex sectionIndex;
+    private String[] labels = new String[0];
+    // 行 -> 是否包含分组起点，按列数缓存
+    private boolean[] rowHasHeader = new boolean[0];
+    private int cachedSpanCount = -1;
+
+    public DayHeaderDecoration(Context context) {
+        headerHeight = dp(context, 28);
+        textPadding = dp(context, 8);
+        backgroundPaint.setColor(Color.parseColor("#F5F5F5"));
+        textPaint.setColor(Color.parseColor("#333333"));
+        textPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 14,
+                context.getResources().getDisplayMetrics()));
+        textPaint.setFakeBoldText(true);
+    }
+
+    /**
+     * 列表数据变化后设置新的分组索引
+     */
+    public void setSectionIndex(SectionIndex sectionIndex) {
+        this.sectionIndex = sectionIndex;
+        labels = new String[sectionIndex.getSectionCount()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = PhotoManager.formatEpochDay(sectionIndex.getDayForSection(i));
+        }
+        cachedSpanCount = -1;
+    }
+
+    @Override
+    public void getItemOffsets(@NonNull Rect outRect, @NonNull View view, @NonNull RecyclerView parent,
+                               @NonNull RecyclerView.State state) {
+        int position = parent.getChildAdapterPosition(view);
+        int spanCount = getSpanCount(parent);
+        if (position == RecyclerView.NO_POSITION || sectionIndex == null || position >= sectionIndex.getItemCount()) {
+            return;
+        }
+        ensureRows(spanCount);
+        if (rowHasHeader[position / spanCount]) {
+            outRect.top = headerHeight;
+        }
+    }
+
+    @Override
+    public void onDraw(@NonNull Canvas c, @NonNull RecyclerView parent, @NonNull RecyclerView.State state) {
+        if (sectionIndex == null) {
+            return;
+        }
+        int spanCount = getSpanCount(parent);
+        ensureRows(spanCount);
+        RecyclerView.LayoutManager layoutManager = parent.getLayoutManager();
+
+        for (int i = 0; i < parent.getChildCount(); i++) {
+            View child = parent.getChildAt(i);
+            int position = parent.getChildAdapterPosition(child);
+            if (position == RecyclerView.NO_POSITION || position >= sectionIndex.getItemCount()
+                    || !rowHasHeader[position / spanCount]) {
+                continue;
+            }
+            int top = layoutManager.getDecoratedTop(child);
+            // 每行只画一次背景
+            if (position % spanCount == 0) {
+                c.drawRect(parent.getLeft(), top, parent.getRight(), top + headerHeight, backgroundPaint);
+            }
+            if (sectionIndex.isSectionStart(position)) {
+                drawLabel(c, labels[sectionIndex.getSectionForPosition(position)],
+                        layoutManager.getDecoratedLeft(child), top);
+            }
+        }
+    }
+
+    @Override
+    public void onDrawOver(@NonNull Canvas c, @NonNull RecyclerView parent, @NonNull RecyclerView.State state) {
+        if (sectionIndex == null || parent.getChildCount() == 0) {
+            return;
+        }
+        View first = parent.getChildAt(0);
+        int position = parent.getChildAdapterPosition(first);
+        int section = sectionIndex.getSectionForPosition(position);
+        if (section < 0) {
+            return;
+        }
+
+        // 下一个分组的标题到达顶部时，把固定标题推上去
+        int offset = 0;
+        if (section + 1 < sectionIndex.getSectionCount()) {
+            RecyclerView.LayoutManager layoutManager = parent.getLayoutManager();
+            View next = layoutManager.findViewByPosition(sectionIndex.getPositionForSection(section + 1));
+            if (next != null) {
+                int nextTop = layoutManager.getDecoratedTop(next);
+                if (nextTop < headerHeight) {
+                    offset = nextTop - headerHeight;
+                }
+            }
+        }
+
+        c.drawRect(parent.getLeft(), offset, parent.getRight(), offset + headerHeight, backgroundPaint);
+        drawLabel(c, labels[section], parent.getPaddingLeft(), offset);
+    }
+
+    private void drawLabel(Canvas c, String label, int left, int top) {
+        Paint.FontMetrics metrics = textPaint.getFontMetrics();
+        float baseline = top + (headerHeight - metrics.ascent - metrics.descent) / 2f;
+        c.drawText(label, left + textPadding, baseline, textPaint);
+    }
+
+    /**
+     * 按当前列数计算哪些行包含分组起点（只在索引或列数变化时重新计算）
+     */
+    private void ensureRows(int spanCount) {
+        if (spanCount == cachedSpanCount) {
+            return;
+        }
+        int rowCount = (sectionIndex.getItemCount() + spanCount - 1) / spanCount;
+        rowHasHeader = new boolean[rowCount];
+        for (int section = 0; section < sectionIndex.getSectionCount(); section++) {
+            rowHasHeader[sectionIndex.getPositionForSection(section) / spanCount] = true;
+        }
+        cachedSpanCount = spanCount;
+    }
+
+    private static int getSpanCount(RecyclerView parent) {
+        RecyclerView.LayoutManager layoutManager = parent.getLayoutManager();
+        return layoutManager instanceof GridLayoutManager ? ((GridLayoutManager) layoutManager).getSpanCount() : 1;
+    }
+
+    private static int dp(Context context, int value) {
+        return Math.round(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, value,
+                context.getResources().getDisplayMetrics()));
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.photogallery;
+
+/**
+ * 一个显示日期（或全部媒体）的汇总：数量、总大小和封面
+ * 由 MediaIndex 增量维护，文件夹列表只使用汇总，不需要完整的媒体列表
+ */
+public class DaySummary {
+    // 全部媒体的汇总使用的日期值
+    public static final long ALL_DAYS = Long.MIN_VALUE;
+
+    private final long epochDay;
+    private int count;
+    private long totalBytes;
+    private long coverMediaId = -1;
+    private String coverPath;
+    private long coverDateAdded = Long.MIN_VALUE;
+
+    public DaySummary(long epochDay) {
+        this.epochDay = epochDay;
+    }
+
+    public DaySummary(DaySummary other) {
+        this.epochDay = other.epochDay;
+        this.count = other.count;
+        this.totalBytes = other.totalBytes;
+        this.coverMediaId = other.coverMediaId;
+        this.coverPath = other.coverPath;
+        this.coverDateAdded = other.coverDateAdded;
+    }
+
+    public long getEpochDay() {
+        return epochDay;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getCoverMediaId() {
+        return coverMediaId;
+    }
+
+    public String getCoverPath() {
+        return coverPath;
+    }
+
+    /**
+     * 加入一个媒体，最新的（DATE_ADDED最大）作为封面
+     */
+    void add(Photo photo) {
+        count++;
+        totalBytes += photo.getSize();
+        if (isNewerThanCover(photo)) {
+            setCover(photo);
+        }
+    }
+
+    /**
+     * 移除一个媒体
+     *
+     * @return 被移除的是封面，需要调用方重新选择封面
+     */
+    boolean remove(Photo photo) {
+        count--;
+        totalBytes -= photo.getSize();
+        if (photo.getId() == coverMediaId) {
+            clearCover();
+            return true;
+        }
+        return false;
+    }
+
+    void offerCover(Photo photo) {
+        if (isNewerThanCover(photo)) {
+            setCover(photo);
+        }
+    }
+
+    private boolean isNewerThanCover(Photo photo) {
+        return photo.getDateAdded() > coverDateAdded
+                || (photo.getDateAdded() == coverDateAdded && photo.getId() > coverMediaId);
+    }
+
+    private void setCover(Photo photo) {
+        coverMediaId = photo.getId();
+        coverPath = photo.getPath();
+        coverDateAdded = photo.getDateAdded();
+    }
+
+    private void clearCover() {
+        coverMediaId = -1;
+        coverPath = null;
+        coverDateAdded = Long.MIN_VALUE;
+    }
+}
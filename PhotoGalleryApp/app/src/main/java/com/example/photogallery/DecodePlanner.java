@@ -0,0 +1,147 @@
+package com.example.photogallery;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.os.SystemClock;
+
+/**
+ * 查看大图时为每张图决定解码的采样率和位图格式
+ * 查看器按宽度适配（TouchImageView），需要的宽度是屏幕宽度 × DETAIL_ZOOM（不超过原图），
+ * 取仍不低于它的最大2的幂采样率；只用于显示的位图在 Android 8+ 用 HARDWARE（放在图形内存中，不占Java/native堆），
+ * 其他情况用 ARGB_8888，只有内存紧张时才用 RGB_565
+ * 解码后高度超过纹理上限的长图不能用 HARDWARE，改用软件位图，超过字节上限时先降为 RGB_565，仍然超出再加大采样率；
+ * Android 9以下软件位图同样受纹理上限限制，长图只能加大采样率
+ */
+public class DecodePlanner {
+    // 放大到这么多倍时仍然清晰
+    private static final int DETAIL_ZOOM = 3;
+    // 硬件位图是GPU纹理，边长超过这个值不能保证可以绘制
+    private static final int MAX_TEXTURE_SIZE = 4096;
+    // 软件位图的字节上限（Canvas 能绘制的位图上限为100MB）
+    private static final long MAX_BITMAP_BYTES = 48L * 1024 * 1024;
+    // Java堆用掉这个比例时视为内存紧张
+    private static final float HEAP_PRESSURE_RATIO = 0.75f;
+    // 系统内存状态是跨进程查询，在这个间隔内复用上次的结果
+    private static final long MEMORY_CHECK_INTERVAL_MS = 1000;
+
+    private static volatile long lastMemoryCheck = 0;
+    private static volatile boolean lastSystemLowMemory = false;
+
+    public static class Plan {
+        public final int sampleSize;
+        // 解码后的尺寸（原图尺寸未知时为允许的最大尺寸）
+        public final int width;
+        public final int height;
+        public final Bitmap.Config config;
+
+        Plan(int sampleSize, int width, int height, Bitmap.Config config) {
+            this.sampleSize = sampleSize;
+            this.width = width;
+            this.height = height;
+            this.config = config;
+        }
+
+        public boolean isHardware() {
+            return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && config == Bitmap.Config.HARDWARE;
+        }
+
+        @Override
+        public String toString() {
+            return width + "x" + height + " 1/" + sampleSize + " " + config;
+        }
+    }
+
+    /**
+     * 只读取文件头得到图片尺寸（在后台线程调用）
+     *
+     * @return {宽, 高}，读取失败时为 {0, 0}
+     */
+    public static int[] readSize(String path) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        return new int[] {Math.max(0, options.outWidth), Math.max(0, options.outHeight)};
+    }
+
+    /**
+     * @param srcWidth  原图按方向旋转后的宽度（Glide 解码时会旋转），未知时为0
+     * @param srcHeight 原图按方向旋转后的高度，未知时为0
+     */
+    public static Plan plan(Context context, int srcWidth, int srcHeight) {
+        boolean lowMemory = isUnderMemoryPressure(context);
+        if (srcWidth <= 0 || srcHeight <= 0) {
+            // 尺寸未知：按屏幕限制最大边，不用硬件位图
+            int screenMax = Math.max(context.getResources().getDisplayMetrics().widthPixels,
+                    context.getResources().getDisplayMetrics().heightPixels);
+            int maxSize = Math.min(MAX_TEXTURE_SIZE, screenMax * DETAIL_ZOOM);
+            return new Plan(1, maxSize, maxSize, lowMemory ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888);
+        }
+
+        int screenWidth = context.getResources().getDisplayMetrics().widthPixels;
+        int targetWidth = Math.min(srcWidth, screenWidth * DETAIL_ZOOM);
+        int sampleSize = 1;
+        while (srcWidth / (sampleSize * 2) >= targetWidth) {
+            sampleSize *= 2;
+        }
+        // 宽高都要在纹理上限以内（很宽的全景图）
+        while (ceilDiv(srcWidth, sampleSize) > MAX_TEXTURE_SIZE) {
+            sampleSize *= 2;
+        }
+        int width = ceilDiv(srcWidth, sampleSize);
+        int height = ceilDiv(srcHeight, sampleSize);
+
+        if (height <= MAX_TEXTURE_SIZE && !lowMemory && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            return new Plan(sampleSize, width, height, Bitmap.Config.HARDWARE);
+        }
+
+        // 软件位图（长图、Android 8以下或内存紧张）：保持宽度上的清晰度，先牺牲色深再牺牲分辨率
+        Bitmap.Config config = lowMemory ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        if ((long) width * height * 4 > MAX_BITMAP_BYTES) {
+            config = Bitmap.Config.RGB_565;
+        }
+        // Android 9以下硬件加速绘制时软件位图也要上传为纹理，超过纹理上限的会显示为空白
+        boolean textureLimited = Build.VERSION.SDK_INT < Build.VERSION_CODES.P;
+        while ((long) width * height * bytesPerPixel(config) > MAX_BITMAP_BYTES
+                || (textureLimited && height > MAX_TEXTURE_SIZE)) {
+            sampleSize *= 2;
+            width = ceilDiv(srcWidth, sampleSize);
+            height = ceilDiv(srcHeight, sampleSize);
+        }
+        return new Plan(sampleSize, width, height, config);
+    }
+
+    /**
+     * 系统内存不足、低内存设备，或者Java堆快用完（可以在主线程调用）
+     */
+    public static boolean isUnderMemoryPressure(Context context) {
+        long now = SystemClock.uptimeMillis();
+        if (now - lastMemoryCheck > MEMORY_CHECK_INTERVAL_MS) {
+            boolean low = false;
+            ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+            if (activityManager != null) {
+                ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+                activityManager.getMemoryInfo(memoryInfo);
+                low = activityManager.isLowRamDevice() || memoryInfo.lowMemory;
+            }
+            lastSystemLowMemory = low;
+            lastMemoryCheck = now;
+        }
+        if (lastSystemLowMemory) {
+            return true;
+        }
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return used > runtime.maxMemory() * HEAP_PRESSURE_RATIO;
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        return config == Bitmap.Config.RGB_565 ? 2 : 4;
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.photogallery;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 显示日期覆盖表（媒体ID -> 显示日期的epoch-day）
+ * "3天后"只需写入一条记录，不再复制文件，撤销时恢复原记录即可
+ * 只由 MediaJobQueue 的任务修改，每批任务同步写入一次磁盘
+ */
+public class DisplayDateStore {
+    private static final String TAG = "DisplayDateStore";
+    private static final String PREFS_NAME = "DisplayDateOverrides";
+    public static final long NO_OVERRIDE = Long.MIN_VALUE;
+
+    private static DisplayDateStore instance;
+
+    private final SharedPreferences prefs;
+    private final Map<Long, Long> overrides = new HashMap<>();
+
+    private DisplayDateStore(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+
+        // 启动时一次性读入内存，之后查询都是O(1)
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            if (entry.getValue() instanceof Long) {
+                try {
+                    overrides.put(Long.parseLong(entry.getKey()), (Long) entry.getValue());
+                } catch (NumberFormatException e) {
+                    // 忽略无效的记录
+                }
+            }
+        }
+    }
+
+    public static synchronized DisplayDateStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new DisplayDateStore(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 获取媒体的覆盖显示日期
+     * @return epoch-day，没有覆盖时返回NO_OVERRIDE
+     */
+    public synchronized long getDisplayDay(long mediaId) {
+        Long day = overrides.get(mediaId);
+        return day != null ? day : NO_OVERRIDE;
+    }
+
+    /**
+     * 批量设置媒体的显示日期，整批只写一次磁盘（在 MediaJobQueue 的工作线程上调用），返回后任务才能从日志中移除
+     * 写入时不持有锁，主线程读取覆盖值不会等待磁盘
+     * @param days 媒体ID -> epoch-day，NO_OVERRIDE表示删除覆盖记录
+     */
+    public void setDisplayDays(Map<Long, Long> days) {
+        SharedPreferences.Editor editor = prefs.edit();
+        boolean changed = false;
+        synchronized (this) {
+            for (Map.Entry<Long, Long> entry : days.entrySet()) {
+                long mediaId = entry.getKey();
+                long epochDay = entry.getValue();
+                if (epochDay == NO_OVERRIDE) {
+                    if (overrides.remove(mediaId) != null) {
+                        editor.remove(String.valueOf(mediaId));
+                        changed = true;
+                    }
+                } else {
+                    Long previous = overrides.put(mediaId, epochDay);
+                    if (previous == null || previous != epochDay) {
+                        editor.putLong(String.valueOf(mediaId), epochDay);
+                        changed = true;
+                    }
+                }
+            }
+        }
+        if (changed && !editor.commit()) {
+            Log.w(TAG, "写入覆盖表失败");
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.photogallery;
+
+import android.annotation.SuppressLint;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import com.bumptech.glide.RequestManager;
+
+/**
+ * 网格右侧的快速滚动条
+ * 拖动时按比例直接跳到目标日期分组（查 SectionIndex），并显示日期气泡；
+ * 拖动期间暂停Glide请求，松手后只加载目标位置附近的缩略图
+ */
+public class FastScroller {
+    // 少于这么多项时不显示滚动条
+    private static final int MIN_ITEM_COUNT = 60;
+
+    private final RecyclerView recyclerView;
+    private final View track;
+    private final View thumb;
+    private final TextView bubble;
+    private final RequestManager glide;
+    private SectionIndex sectionIndex;
+    private boolean dragging = false;
+
+    @SuppressLint("ClickableViewAccessibility")
+    public FastScroller(RecyclerView recyclerView, View track, View thumb, TextView bubble, RequestManager glide) {
+        this.recyclerView = recyclerView;
+        this.track = track;
+        this.thumb = thumb;
+        this.bubble = bubble;
+        this.glide = glide;
+
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView rv, int dx, int dy) {
+                if (!dragging) {
+                    syncThumbToList();
+                }
+            }
+        });
+        track.setOnTouchListener((v, event) -> onTrackTouch(event));
+    }
+
+    /**
+     * 列表数据变化后设置新的分组索引
+     */
+    public void setSectionIndex(SectionIndex sectionIndex) {
+        this.sectionIndex = sectionIndex;
+        boolean show = sectionIndex != null && sectionIndex.getItemCount() >= MIN_ITEM_COUNT;
+        track.setVisibility(show ? View.VISIBLE : View.GONE);
+        if (show) {
+            track.post(this::syncThumbToList);
+        }
+    }
+
+    private boolean onTrackTouch(MotionEvent event) {
+        if (sectionIndex == null || sectionIndex.getSectionCount() == 0) {
+            return false;
+        }
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                dragging = true;
+                glide.pauseRequests();
+                AppExecutors.getInstance().setUserScrolling(true);
+                recyclerView.stopScroll();
+                bubble.setVisibility(View.VISIBLE);
+                scrollToFraction(event.getY());
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                scrollToFraction(event.getY());
+                return true;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                dragging = false;
+                bubble.setVisibility(View.GONE);
+                AppExecutors.getInstance().setUserScrolling(false);
+                // 只有目标位置附近绑定的缩略图会开始加载
+                glide.resumeRequests();
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 按触摸位置跳到对应分组的第一项
+     */
+    private void scrollToFraction(float y) {
+        int trackHeight = track.getHeight() - thumb.getHeight();
+        if (trackHeight <= 0) {
+            return;
+        }
+        float thumbY = Math.max(0, Math.min(trackHeight, y - thumb.getHeight() / 2f));
+        float fraction = thumbY / trackHeight;
+
+        int position = Math.round(fraction * (sectionIndex.getItemCount() - 1));
+        int section = sectionIndex.getSectionForPosition(position);
+        int target = sectionIndex.getPositionForSection(section);
+
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (layoutManager instanceof LinearLayoutManager) {
+            ((LinearLayoutManager) layoutManager).scrollToPositionWithOffset(target, 0);
+        } else {
+            recyclerView.scrollToPosition(target);
+        }
+
+        thumb.setTranslationY(thumbY);
+        bubble.setText(PhotoManager.formatEpochDay(sectionIndex.getDayForSection(section)));
+        bubble.setTranslationY(Math.max(0, Math.min(track.getHeight() - bubble.getHeight(),
+                thumbY + (thumb.getHeight() - bubble.getHeight()) / 2f)));
+    }
+
+    /**
+     * 普通滚动时让滑块跟随列表位置
+     */
+    private void syncThumbToList() {
+        if (sectionIndex == null || track.getVisibility() != View.VISIBLE) {
+            return;
+        }
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (!(layoutManager instanceof LinearLayoutManager)) {
+            return;
+        }
+        LinearLayoutManager linear = (LinearLayoutManager) layoutManager;
+        int first = linear.findFirstVisibleItemPosition();
+        int last = linear.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION) {
+            return;
+        }
+        int scrollable = sectionIndex.getItemCount() - (last - first + 1);
+        float fraction = scrollable <= 0 ? 0 : Math.min(1f, (float) first / scrollable);
+        thumb.setTranslationY(fraction * (track.getHeight() - thumb.getHeight()));
+    }
+}
@@ -11,14 +11,12 @@ import android.provider.MediaStore;
 import android.util.Log;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 
 /**
  * 文件操作助手类
- * 处理图片文件的复制和删除操作
+ * 处理图片文件的写入和删除操作
  */
 public class FileOperationHelper {
     private static final String TAG = "FileOperationHelper";
@@ -29,84 +27,69 @@ public class FileOperationHelper {
     }
 
     /**
-     * 复制图片文件到MediaStore（创建新的副本）
-     * 新文件会有新的DATE_ADDED（当前时间）
+     * 写入新文件内容
+     */
+    public interface ContentWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * 在源图片所在的目录新建一张图片：插入MediaStore条目（IS_PENDING），写入内容，再清除IS_PENDING
+     * 写入失败时删除新建的条目；DATE_ADDED为当前时间
      *
-     * @param sourcePhoto 源图片对象
+     * @param sourcePath 源图片的完整路径（决定新文件所在目录）
+     * @param displayName 新文件名，重名时系统（Android 9及以下由这里）自动改名
+     * @param mimeType 新文件的MIME类型
+     * @param writer 写入文件内容
      * @return 新图片的ID，失败返回-1
      */
-    public long copyImageFile(Photo sourcePhoto) {
-        try {
-            // 准备新文件的元数据
-            ContentValues values = new ContentValues();
-
-            // 获取原文件名和路径信息
-            File sourceFile = new File(sourcePhoto.getPath());
-            String fileName = sourceFile.getName();
-            String displayName = fileName;
-
-            // 从原文件路径提取相对路径（相对于Pictures目录）
-            String relativePath = extractRelativePath(sourcePhoto.getPath());
-
-            values.put(MediaStore.Images.Media.DISPLAY_NAME, displayName);
-            values.put(MediaStore.Images.Media.MIME_TYPE, getMimeType(fileName));
-
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-                // Android 10+ 使用相对路径
-                values.put(MediaStore.Images.Media.RELATIVE_PATH, relativePath);
-                values.put(MediaStore.Images.Media.IS_PENDING, 1); // 标记为待处理
+    public long insertImage(String sourcePath, String displayName, String mimeType, ContentWriter writer) {
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.Images.Media.DISPLAY_NAME, displayName);
+        values.put(MediaStore.Images.Media.MIME_TYPE, mimeType);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            // Android 10+ 使用相对路径
+            values.put(MediaStore.Images.Media.RELATIVE_PATH, extractRelativePath(sourcePath));
+            values.put(MediaStore.Images.Media.IS_PENDING, 1); // 标记为待处理
+        } else {
+            // Android 9及以下没有相对路径，直接指定文件位置
+            File target = new File(new File(sourcePath).getParentFile(), displayName);
+            if (target.exists()) {
+                target = new File(target.getParentFile(), generateUniqueFileName(displayName));
             }
+            values.put(MediaStore.Images.Media.DATA, target.getPath());
+        }
 
-            // DATE_ADDED会自动设置为当前时间（这是我们想要的！）
-
-            ContentResolver resolver = context.getContentResolver();
-            Uri collection = MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
-
-            // 创建新的MediaStore条目
-            Uri newImageUri = resolver.insert(collection, values);
-
-            if (newImageUri == null) {
-                Log.e(TAG, "Failed to create new MediaStore entry");
-                return -1;
-            }
-
-            // 复制文件内容
-            try (OutputStream out = resolver.openOutputStream(newImageUri);
-                 InputStream in = new FileInputStream(sourceFile)) {
-
-                if (out == null) {
-                    Log.e(TAG, "Failed to open output stream");
-                    resolver.delete(newImageUri, null, null);
-                    return -1;
-                }
-
-                // 复制数据
-                byte[] buffer = new byte[8192];
-                int bytesRead;
-                while ((bytesRead = in.read(buffer)) != -1) {
-                    out.write(buffer, 0, bytesRead);
-                }
-
-                out.flush();
-            }
+        ContentResolver resolver = context.getContentResolver();
+        Uri newImageUri = resolver.insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
+        if (newImageUri == null) {
+            Log.e(TAG, "Failed to create new MediaStore entry");
+            return -1;
+        }
 
-            // Android 10+ 需要更新IS_PENDING状态
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-                values.clear();
-                values.put(MediaStore.Images.Media.IS_PENDING, 0);
-                resolver.update(newImageUri, values, null, null);
+        try (OutputStream out = resolver.openOutputStream(newImageUri)) {
+            if (out == null) {
+                throw new IOException("Failed to open output stream");
             }
-
-            // 获取新图片的ID
-            long newImageId = ContentUris.parseId(newImageUri);
-            Log.d(TAG, "Successfully copied image. New ID: " + newImageId);
-
-            return newImageId;
-
-        } catch (IOException e) {
-            Log.e(TAG, "Error copying image file", e);
+            writer.write(out);
+            out.flush();
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Error writing image file: " + displayName, e);
+            resolver.delete(newImageUri, null, null);
             return -1;
         }
+
+        // Android 10+ 需要更新IS_PENDING状态
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            values.clear();
+            values.put(MediaStore.Images.Media.IS_PENDING, 0);
+            resolver.update(newImageUri, values, null, null);
+        }
+
+        long newImageId = ContentUris.parseId(newImageUri);
+        Log.d(TAG, "Successfully inserted image. New ID: " + newImageId);
+        return newImageId;
     }
 
     /**
@@ -138,76 +121,6 @@ public class FileOperationHelper {
         return "Pictures/";
     }
 
-    /**
-     * 从完整路径中提取视频相对路径
-     * 例如: /storage/emulated/0/Movies/MyFolder/video.mp4 -> Movies/MyFolder/
-     * 或者: /storage/emulated/0/Pictures/MyFolder/video.mp4 -> Pictures/MyFolder/
-     */
-    private String extractVideoRelativePath(String fullPath) {
-        // 尝试从路径中提取Movies之后的部分
-        if (fullPath.contains("/Movies/")) {
-            int moviesIndex = fullPath.indexOf("/Movies/");
-            String afterMovies = fullPath.substring(moviesIndex + 1);
-            // 移除文件名，只保留目录路径
-            int lastSlash = afterMovies.lastIndexOf('/');
-            if (lastSlash > 0) {
-                return afterMovies.substring(0, lastSlash + 1);
-            }
-            return "Movies/";
-        } else if (fullPath.contains("/Pictures/")) {
-            int picturesIndex = fullPath.indexOf("/Pictures/");
-            String afterPictures = fullPath.substring(picturesIndex + 1);
-            int lastSlash = afterPictures.lastIndexOf('/');
-            if (lastSlash > 0) {
-                return afterPictures.substring(0, lastSlash + 1);
-            }
-            return "Pictures/";
-        } else if (fullPath.contains("/DCIM/")) {
-            int dcimIndex = fullPath.indexOf("/DCIM/");
-            String afterDCIM = fullPath.substring(dcimIndex + 1);
-            int lastSlash = afterDCIM.lastIndexOf('/');
-            if (lastSlash > 0) {
-                return afterDCIM.substring(0, lastSlash + 1);
-            }
-            return "DCIM/Camera/";
-        }
-
-        // 默认返回Movies目录
-        return "Movies/";
-    }
-
-    /**
-     * 根据文件名获取MIME类型
-     */
-    private String getMimeType(String fileName) {
-        String extension = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase();
-        switch (extension) {
-            case "jpg":
-            case "jpeg":
-                return "image/jpeg";
-            case "png":
-                return "image/png";
-            case "gif":
-                return "image/gif";
-            case "webp":
-                return "image/webp";
-            case "heic":
-                return "image/heic";
-            case "mp4":
-                return "video/mp4";
-            case "3gp":
-                return "video/3gpp";
-            case "mkv":
-                return "video/x-matroska";
-            case "webm":
-                return "video/webm";
-            case "avi":
-                return "video/x-msvideo";
-            default:
-                return "image/jpeg";
-        }
-    }
-
     /**
      * 生成唯一的文件名（添加时间戳避免重名）
      */
@@ -222,115 +135,6 @@ public class FileOperationHelper {
         return originalFileName + "_" + System.currentTimeMillis();
     }
 
-    /**
-     * 复制视频文件到MediaStore（创建新的副本）
-     * 新文件会有新的DATE_ADDED（当前时间）
-     *
-     * @param sourceUri 源视频URI
-     * @param fileName 文件名
-     * @return 新视频的ID，失败返回-1
-     */
-    public long copyVideoFile(Uri sourceUri, String fileName) {
-        return copyVideoFile(sourceUri, fileName, null);
-    }
-
-    /**
-     * 复制视频文件到MediaStore（创建新的副本）
-     * 新文件会有新的DATE_ADDED（当前时间）
-     *
-     * @param sourceUri 源视频URI
-     * @param fileName 文件名
-     * @param sourcePath 源视频的完整路径（用于提取相对路径）
-     * @return 新视频的ID，失败返回-1
-     */
-    public long copyVideoFile(Uri sourceUri, String fileName, String sourcePath) {
-        Log.d(TAG, "=== copyVideoFile 开始 ===");
-        Log.d(TAG, "sourceUri: " + sourceUri);
-        Log.d(TAG, "fileName: " + fileName);
-        Log.d(TAG, "sourcePath: " + sourcePath);
-
-        try {
-            // 准备新文件的元数据
-            ContentValues values = new ContentValues();
-
-            // 为文件名添加时间戳，避免重名冲突
-            String uniqueFileName = generateUniqueFileName(fileName);
-            Log.d(TAG, "生成的唯一文件名: " + uniqueFileName);
-            values.put(MediaStore.Video.Media.DISPLAY_NAME, uniqueFileName);
-            values.put(MediaStore.Video.Media.MIME_TYPE, getMimeType(fileName));
-
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-                // Android 10+ 使用相对路径
-                String relativePath = "Movies/";
-                if (sourcePath != null && !sourcePath.isEmpty()) {
-                    relativePath = extractVideoRelativePath(sourcePath);
-                }
-                Log.d(TAG, "使用相对路径: " + relativePath);
-                values.put(MediaStore.Video.Media.RELATIVE_PATH, relativePath);
-                values.put(MediaStore.Video.Media.IS_PENDING, 1);
-            }
-
-            ContentResolver resolver = context.getContentResolver();
-            Uri collection = MediaStore.Video.Media.EXTERNAL_CONTENT_URI;
-
-            // 创建新的MediaStore条目
-            Log.d(TAG, "正在创建MediaStore条目...");
-            Uri newVideoUri = resolver.insert(collection, values);
-
-            if (newVideoUri == null) {
-                Log.e(TAG, "Failed to create new MediaStore entry for video");
-                return -1;
-            }
-            Log.d(TAG, "新视频URI: " + newVideoUri);
-
-            // 复制文件内容
-            Log.d(TAG, "正在打开输入输出流...");
-            try (OutputStream out = resolver.openOutputStream(newVideoUri);
-                 InputStream in = resolver.openInputStream(sourceUri)) {
-
-                if (out == null || in == null) {
-                    Log.e(TAG, "Failed to open streams for video copy. out=" + out + ", in=" + in);
-                    resolver.delete(newVideoUri, null, null);
-                    return -1;
-                }
-
-                // 复制数据
-                Log.d(TAG, "正在复制数据...");
-                byte[] buffer = new byte[8192];
-                int bytesRead;
-                long totalBytes = 0;
-                while ((bytesRead = in.read(buffer)) != -1) {
-                    out.write(buffer, 0, bytesRead);
-                    totalBytes += bytesRead;
-                }
-
-                out.flush();
-                Log.d(TAG, "复制完成，总字节数: " + totalBytes);
-            }
-
-            // Android 10+ 需要更新IS_PENDING状态
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-                values.clear();
-                values.put(MediaStore.Video.Media.IS_PENDING, 0);
-                resolver.update(newVideoUri, values, null, null);
-                Log.d(TAG, "已更新IS_PENDING状态为0");
-            }
-
-            // 获取新视频的ID
-            long newVideoId = ContentUris.parseId(newVideoUri);
-            Log.d(TAG, "Successfully copied video. New ID: " + newVideoId);
-
-            return newVideoId;
-
-        } catch (IOException e) {
-            Log.e(TAG, "Error copying video file: " + e.getMessage(), e);
-            return -1;
-        } catch (Exception e) {
-            Log.e(TAG, "Unexpected error copying video file: " + e.getMessage(), e);
-            return -1;
-        }
-    }
-
     /**
      * 删除视频文件
      *
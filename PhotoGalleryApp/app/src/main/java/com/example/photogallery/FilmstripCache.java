@@ -0,0 +1,242 @@
+package com.example.photogallery;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+import android.util.LruCache;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 视频进度条上方的缩略图胶片（所有帧横向拼成一张图）
+ * 帧用 MediaMetadataRetriever 按关键帧取出，不经过播放用的解码器；生成在预加载通道进行，
+ * 结果按 媒体ID + DATE_MODIFIED 保存在磁盘上，之后再打开同一个视频时直接读取
+ */
+public class FilmstripCache {
+    private static final String TAG = "FilmstripCache";
+    private static final String CACHE_DIR = "filmstrips";
+
+    // 每个视频的帧数和每帧宽度（像素）
+    public static final int FRAME_COUNT = 20;
+    private static final int FRAME_WIDTH = 160;
+    // 磁盘上最多保留的胶片数，超过时删除最久没用的
+    private static final int MAX_FILES = 200;
+
+    public interface Callback {
+        /**
+         * @param sprite 胶片图，生成失败时为null
+         */
+        void onFilmstripReady(Photo video, Bitmap sprite);
+    }
+
+    private static FilmstripCache instance;
+
+    private final Context context;
+    private final File cacheDir;
+    // 最近用过的几个胶片，左右切换视频时不需要重新读文件
+    private final LruCache<String, Bitmap> memoryCache = new LruCache<>(4);
+    // 正在读取或生成的胶片 -> 等待的回调（只在主线程访问）
+    private final Map<String, List<Callback>> pending = new HashMap<>();
+
+    private FilmstripCache(Context context) {
+        this.context = context.getApplicationContext();
+        cacheDir = new File(this.context.getCacheDir(), CACHE_DIR);
+    }
+
+    public static synchronized FilmstripCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new FilmstripCache(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 获取视频的胶片，在主线程调用，回调也在主线程
+     */
+    public void load(Photo video, Callback callback) {
+        String key = keyFor(video);
+        Bitmap cached = memoryCache.get(key);
+        if (cached != null) {
+            callback.onFilmstripReady(video, cached);
+            return;
+        }
+        List<Callback> waiting = pending.get(key);
+        if (waiting != null) {
+            waiting.add(callback);
+            return;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(callback);
+        pending.put(key, waiting);
+
+        AppExecutors.getInstance().execute(AppExecutors.LANE_FOREGROUND, () -> {
+            File file = new File(cacheDir, key + ".jpg");
+            if (file.exists()) {
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inPreferredConfig = Bitmap.Config.RGB_565;
+                Bitmap sprite = BitmapFactory.decodeFile(file.getPath(), options);
+                if (sprite != null) {
+                    file.setLastModified(System.currentTimeMillis());
+                    deliver(key, video, sprite);
+                    return;
+                }
+            }
+            // 没有缓存：在预加载通道生成
+            AppExecutors.getInstance().execute(AppExecutors.LANE_PREFETCH, () -> {
+                Bitmap sprite = generate(video);
+                if (sprite != null) {
+                    save(video, key, sprite);
+                }
+                deliver(key, video, sprite);
+            });
+        });
+    }
+
+    private void deliver(String key, Photo video, Bitmap sprite) {
+        AppExecutors.getInstance().mainThread().execute(() -> {
+            if (sprite != null) {
+                memoryCache.put(key, sprite);
+            }
+            List<Callback> waiting = pending.remove(key);
+            if (waiting != null) {
+                for (Callback callback : waiting) {
+                    callback.onFilmstripReady(video, sprite);
+                }
+            }
+        });
+    }
+
+    /**
+     * 在视频时长内均匀取 FRAME_COUNT 个位置附近的关键帧，缩小后拼成一行
+     */
+    private Bitmap generate(Photo video) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            Uri uri = video.getUri() != null ? video.getUri() : Uri.fromFile(new File(video.getPath()));
+            retriever.setDataSource(context, uri);
+
+            long durationMs = parseLong(retriever.extractMetadata(
+                    MediaMetadataRetriever.METADATA_KEY_DURATION), video.getDuration());
+            if (durationMs <= 0) {
+                return null;
+            }
+            int width = (int) parseLong(retriever.extractMetadata(
+                    MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH), 0);
+            int height = (int) parseLong(retriever.extractMetadata(
+                    MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT), 0);
+            int rotation = (int) parseLong(retriever.extractMetadata(
+                    MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION), 0);
+            if (rotation == 90 || rotation == 270) {
+                int swap = width;
+                width = height;
+                height = swap;
+            }
+            int frameHeight = width > 0 && height > 0 ? Math.round((float) FRAME_WIDTH * height / width)
+                    : FRAME_WIDTH * 9 / 16;
+            // 超长的竖屏录屏也限制高度
+            frameHeight = Math.max(FRAME_WIDTH / 4, Math.min(FRAME_WIDTH * 2, frameHeight));
+
+            Bitmap sprite = Bitmap.createBitmap(FRAME_WIDTH * FRAME_COUNT, frameHeight, Bitmap.Config.RGB_565);
+            Canvas canvas = new Canvas(sprite);
+            Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+            Rect dst = new Rect();
+            for (int i = 0; i < FRAME_COUNT; i++) {
+                // 取每一段的中点
+                long timeUs = durationMs * (2 * i + 1) / (2 * FRAME_COUNT) * 1000;
+                Bitmap frame;
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+                    frame = retriever.getScaledFrameAtTime(timeUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC,
+                            FRAME_WIDTH, frameHeight);
+                } else {
+                    frame = retriever.getFrameAtTime(timeUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+                }
+                if (frame == null) {
+                    continue;
+                }
+                dst.set(i * FRAME_WIDTH, 0, (i + 1) * FRAME_WIDTH, frameHeight);
+                canvas.drawBitmap(frame, null, dst, paint);
+                frame.recycle();
+            }
+            return sprite;
+        } catch (Exception e) {
+            Log.w(TAG, "生成胶片失败: " + video.getName(), e);
+            return null;
+        } finally {
+            try {
+                retriever.release();
+            } catch (Exception e) {
+                // 忽略
+            }
+        }
+    }
+
+    private void save(Photo video, String key, Bitmap sprite) {
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            return;
+        }
+        // 同一个视频的旧版本（文件已修改）不再需要
+        String prefix = video.getId() + "_";
+        File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith(prefix)) {
+                    file.delete();
+                }
+            }
+        }
+
+        File file = new File(cacheDir, key + ".jpg");
+        File tempFile = new File(cacheDir, key + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            sprite.compress(Bitmap.CompressFormat.JPEG, 80, out);
+        } catch (IOException e) {
+            Log.w(TAG, "保存胶片失败: " + key, e);
+            tempFile.delete();
+            return;
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            return;
+        }
+        trim();
+    }
+
+    private void trim() {
+        File[] files = cacheDir.listFiles();
+        if (files == null || files.length <= MAX_FILES) {
+            return;
+        }
+        Arrays.sort(files, (f1, f2) -> Long.compare(f1.lastModified(), f2.lastModified()));
+        for (int i = 0; i < files.length - MAX_FILES; i++) {
+            files[i].delete();
+        }
+    }
+
+    private static String keyFor(Photo video) {
+        return video.getId() + "_" + video.getDateModified();
+    }
+
+    private static long parseLong(String value, long fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
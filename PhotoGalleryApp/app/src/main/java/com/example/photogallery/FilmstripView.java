@@ -0,0 +1,78 @@
+package com.example.photogallery;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * 显示 FilmstripCache 生成的胶片
+ * 默认把所有帧铺满宽度；setFrame 之后只显示最接近某个进度的一帧（拖动时的预览）
+ */
+public class FilmstripView extends View {
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect src = new Rect();
+    private final Rect dst = new Rect();
+    private Bitmap sprite;
+    private int frameCount;
+    // 单帧模式下显示的帧，-1 表示显示全部
+    private int frame = -1;
+
+    public FilmstripView(Context context) {
+        super(context);
+    }
+
+    public FilmstripView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public void setSprite(Bitmap sprite, int frameCount) {
+        this.sprite = sprite;
+        this.frameCount = frameCount;
+        invalidate();
+    }
+
+    public boolean hasSprite() {
+        return sprite != null;
+    }
+
+    /**
+     * 只显示进度 fraction（0~1）所在的一帧
+     */
+    public void setFrame(float fraction) {
+        int newFrame = Math.max(0, Math.min(frameCount - 1, (int) (fraction * frameCount)));
+        if (newFrame != frame) {
+            frame = newFrame;
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (sprite == null || frameCount == 0) {
+            return;
+        }
+        int frameWidth = sprite.getWidth() / frameCount;
+        if (frame >= 0) {
+            src.set(frame * frameWidth, 0, (frame + 1) * frameWidth, sprite.getHeight());
+            dst.set(0, 0, getWidth(), getHeight());
+            canvas.drawBitmap(sprite, src, dst, paint);
+            return;
+        }
+        // 每帧按格子比例居中裁剪，不拉伸
+        float cellWidth = (float) getWidth() / frameCount;
+        int cropWidth = Math.min(frameWidth, Math.round(sprite.getHeight() * cellWidth / Math.max(1, getHeight())));
+        int cropHeight = Math.min(sprite.getHeight(), Math.round(frameWidth * getHeight() / Math.max(1f, cellWidth)));
+        int cropLeft = (frameWidth - cropWidth) / 2;
+        int cropTop = (sprite.getHeight() - cropHeight) / 2;
+        for (int i = 0; i < frameCount; i++) {
+            src.set(i * frameWidth + cropLeft, cropTop, i * frameWidth + cropLeft + cropWidth, cropTop + cropHeight);
+            dst.set(Math.round(i * cellWidth), 0, Math.round((i + 1) * cellWidth), getHeight());
+            canvas.drawBitmap(sprite, src, dst, paint);
+        }
+    }
+}
@@ -1,29 +1,26 @@
 package com.example.photogallery;
 
-import java.util.ArrayList;
-import java.util.List;
-
+/**
+ * 文件夹列表中的一项，只保存汇总信息
+ * 完整的媒体列表在打开文件夹（GalleryActivity）时才查询
+ */
 public class Folder {
     private String name;
     private String displayName;
-    private List<Photo> photos;
+    private int photoCount;
+    private long totalBytes;
     private String coverPhotoPath;
     private boolean isDateFolder;
 
-    public Folder(String name, String displayName) {
+    public Folder(String name, String displayName, DaySummary summary) {
         this.name = name;
         this.displayName = displayName;
-        this.photos = new ArrayList<>();
+        this.photoCount = summary.getCount();
+        this.totalBytes = summary.getTotalBytes();
+        this.coverPhotoPath = summary.getCoverPath();
         this.isDateFolder = false;
     }
 
-    public void addPhoto(Photo photo) {
-        photos.add(photo);
-        if (coverPhotoPath == null) {
-            coverPhotoPath = photo.getPath();
-        }
-    }
-
     public String getName() {
         return name;
     }
@@ -36,16 +33,16 @@ public class Folder {
         this.displayName = displayName;
     }
 
-    public List<Photo> getPhotos() {
-        return photos;
-    }
-
     public String getCoverPhotoPath() {
         return coverPhotoPath;
     }
 
     public int getPhotoCount() {
-        return photos.size();
+        return photoCount;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
     }
 
     public void setDateFolder(boolean dateFolder) {
@@ -1,6 +1,7 @@
 package com.example.photogallery;
 
 import android.content.Context;
+import android.text.format.Formatter;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -38,7 +39,8 @@ public class FolderAdapter extends RecyclerView.Adapter<FolderAdapter.FolderView
     public void onBindViewHolder(@NonNull FolderViewHolder holder, int position) {
         Folder folder = folders.get(position);
         holder.textViewFolderName.setText(folder.getDisplayName());
-        holder.textViewPhotoCount.setText(folder.getPhotoCount() + " 张照片");
+        holder.textViewPhotoCount.setText(folder.getPhotoCount() + " 张照片 · "
+                + Formatter.formatShortFileSize(context, folder.getTotalBytes()));
 
         if (folder.getCoverPhotoPath() != null) {
             Glide.with(context)
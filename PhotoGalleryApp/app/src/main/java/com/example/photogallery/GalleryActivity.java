@@ -1,26 +1,28 @@
 package com.example.photogallery;
 
-import android.app.PendingIntent;
-import android.content.ContentResolver;
-import android.content.ContentUris;
 import android.content.Intent;
-import android.net.Uri;
-import android.os.Build;
 import android.os.Bundle;
-import android.provider.MediaStore;
+import android.text.format.Formatter;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
 import android.view.View;
 import android.widget.Button;
 import android.widget.LinearLayout;
 import android.widget.Toast;
 import androidx.activity.result.ActivityResultLauncher;
-import androidx.activity.result.IntentSenderRequest;
 import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
+import com.bumptech.glide.Glide;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 public class GalleryActivity extends AppCompatActivity {
     private RecyclerView recyclerViewPhotos;
@@ -31,15 +33,30 @@ public class GalleryActivity extends AppCompatActivity {
     private boolean isDateFolder;
     private ActivityResultLauncher<Intent> imageViewerLauncher;
     private ActivityResultLauncher<Intent> videoPlayerLauncher;
-    private ActivityResultLauncher<IntentSenderRequest> deleteRequestLauncher;
+    private BulkMediaMutator bulkMediaMutator;
+    private FastScroller fastScroller;
+    private DayHeaderDecoration dayHeaderDecoration;
+    private GridLayoutManager gridLayoutManager;
+    private int columns;
+    // 日期文件夹的"相似"视图：只显示相似的图片组，每组连续排列
+    private boolean similarMode = false;
+    // 刚进入相似视图，加载完成后自动选中每组中除最新一张以外的图片
+    private boolean selectDuplicatesOnLoad = false;
+    // 正在压缩PNG截图（到原文件删除完成为止）
+    private boolean compacting = false;
 
     // 选择模式相关
     private LinearLayout layoutToolbar;
     private Button buttonSelectAll;
+    private Button buttonPostpone;
+    private Button buttonStitch;
     private Button buttonDelete;
     private Button buttonCancel;
     private Button buttonEnterSelectMode;
     private List<Photo> photosToDelete;
+    private int postponeCount = 0; // 正在进行的批量推迟数量
+    private int loadGeneration = 0; // 丢弃过期的加载结果
+    private MediaJobQueue.ProgressListener jobProgressListener = this::onJobProgress;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -69,20 +86,8 @@ public class GalleryActivity extends AppCompatActivity {
                 }
         );
 
-        // 注册删除请求启动器
-        deleteRequestLauncher = registerForActivityResult(
-                new ActivityResultContracts.StartIntentSenderForResult(),
-                result -> {
-                    if (result.getResultCode() == RESULT_OK) {
-                        Toast.makeText(this, "删除完成", Toast.LENGTH_SHORT).show();
-                        exitSelectMode();
-                        setResult(RESULT_OK);
-                        loadPhotos();
-                    } else {
-                        Toast.makeText(this, "删除已取消", Toast.LENGTH_SHORT).show();
-                    }
-                }
-        );
+        // 批量删除（内部注册删除确认的启动器）
+        bulkMediaMutator = new BulkMediaMutator(this);
 
         folderName = getIntent().getStringExtra("folder_name");
         folderDisplayName = getIntent().getStringExtra("folder_display_name");
@@ -94,18 +99,37 @@ public class GalleryActivity extends AppCompatActivity {
         }
 
         recyclerViewPhotos = findViewById(R.id.recyclerViewPhotos);
-        recyclerViewPhotos.setLayoutManager(new GridLayoutManager(this, 3));
+        columns = GridDensity.load(this);
+        gridLayoutManager = new GridLayoutManager(this, columns);
+        recyclerViewPhotos.setLayoutManager(gridLayoutManager);
+        recyclerViewPhotos.addOnScrollListener(new AppExecutors.PauseOnScrollListener());
+        setupPinchToChangeColumns();
+
+        // "所有图片"可能有几万项，提供按日期跳转的快速滚动条
+        if (!isDateFolder) {
+            fastScroller = new FastScroller(recyclerViewPhotos,
+                    findViewById(R.id.layoutFastScrollTrack),
+                    findViewById(R.id.viewFastScrollThumb),
+                    findViewById(R.id.textViewFastScrollBubble),
+                    Glide.with(this));
+            dayHeaderDecoration = new DayHeaderDecoration(this);
+            recyclerViewPhotos.addItemDecoration(dayHeaderDecoration);
+        }
 
         // 初始化工具栏
         layoutToolbar = findViewById(R.id.layoutToolbar);
         buttonSelectAll = findViewById(R.id.buttonSelectAll);
+        buttonPostpone = findViewById(R.id.buttonPostpone);
+        buttonStitch = findViewById(R.id.buttonStitch);
         buttonDelete = findViewById(R.id.buttonDelete);
         buttonCancel = findViewById(R.id.buttonCancel);
         buttonEnterSelectMode = findViewById(R.id.buttonEnterSelectMode);
 
         setupToolbarButtons();
 
-        loadPhotos();
+        MediaJobQueue.getInstance(this).addProgressListener(jobProgressListener);
+
+        // 照片在onResume中加载
     }
 
     private void setupToolbarButtons() {
@@ -123,6 +147,18 @@ public class GalleryActivity extends AppCompatActivity {
             }
         });
 
+        buttonPostpone.setOnClickListener(v -> {
+            if (photoAdapter != null && photoAdapter.getSelectedCount() > 0) {
+                showPostponeConfirmDialog();
+            }
+        });
+
+        buttonStitch.setOnClickListener(v -> {
+            if (photoAdapter != null && photoAdapter.getSelectedCount() >= 2) {
+                stitchSelectedPhotos();
+            }
+        });
+
         buttonDelete.setOnClickListener(v -> {
             if (photoAdapter != null && photoAdapter.getSelectedCount() > 0) {
                 showDeleteConfirmDialog();
@@ -137,6 +173,8 @@ public class GalleryActivity extends AppCompatActivity {
             photoAdapter.setSelectMode(true);
             layoutToolbar.setVisibility(View.VISIBLE);
             buttonEnterSelectMode.setVisibility(View.GONE);
+            buttonPostpone.setEnabled(false);
+            buttonStitch.setEnabled(false);
             buttonDelete.setEnabled(false);
             buttonSelectAll.setText("全选");
         }
@@ -149,6 +187,8 @@ public class GalleryActivity extends AppCompatActivity {
             if (isDateFolder) {
                 buttonEnterSelectMode.setVisibility(View.VISIBLE);
             }
+            buttonPostpone.setEnabled(false);
+            buttonStitch.setEnabled(false);
             buttonDelete.setEnabled(false);
             buttonSelectAll.setText("全选");
         }
@@ -166,75 +206,239 @@ public class GalleryActivity extends AppCompatActivity {
             .show();
     }
 
-    private void deleteSelectedPhotos() {
-        photosToDelete = photoAdapter.getSelectedPhotos();
-        if (photosToDelete.isEmpty()) {
+    private void showPostponeConfirmDialog() {
+        int count = photoAdapter.getSelectedCount();
+        new AlertDialog.Builder(this)
+            .setTitle("移到3天后")
+            .setMessage("确定要将选中的 " + count + " 个文件移到3天后吗？")
+            .setPositiveButton("确定", (dialog, which) -> {
+                postponeSelectedPhotos();
+            })
+            .setNegativeButton("取消", null)
+            .show();
+    }
+
+    /**
+     * 批量移到3天后：提交到任务队列，只修改显示日期，不复制也不删除文件
+     */
+    private void postponeSelectedPhotos() {
+        List<Photo> photosToPostpone = photoAdapter.getSelectedPhotos();
+        if (photosToPostpone.isEmpty()) {
             return;
         }
 
-        List<Uri> urisToDelete = new ArrayList<>();
-        for (Photo photo : photosToDelete) {
-            Uri uri;
+        buttonPostpone.setEnabled(false);
+        postponeCount = photosToPostpone.size();
+        new PhotoManager(this).postponeAll(photosToPostpone, PhotoManager.DELAY_DAYS);
+    }
+
+    /**
+     * 任务队列进度回调（主线程）
+     */
+    private void onJobProgress(int completed, int total) {
+        if (postponeCount == 0) {
+            return;
+        }
+        if (completed < total) {
+            buttonPostpone.setText("处理中 " + completed + "/" + total);
+            return;
+        }
+
+        Toast.makeText(this, "已将 " + postponeCount + " 个文件移到3天后", Toast.LENGTH_SHORT).show();
+        postponeCount = 0;
+        exitSelectMode();
+        setResult(RESULT_OK);
+        loadPhotos();
+    }
+
+    /**
+     * 把选中的截图按时间顺序拼成一张长图（保存到 Pictures/ImageStitcher）
+     */
+    private void stitchSelectedPhotos() {
+        List<Photo> selected = photoAdapter.getSelectedPhotos();
+        for (Photo photo : selected) {
             if (photo.isVideo()) {
-                uri = ContentUris.withAppendedId(
-                        MediaStore.Video.Media.EXTERNAL_CONTENT_URI,
-                        photo.getId()
-                );
-            } else {
-                uri = ContentUris.withAppendedId(
-                        MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
-                        photo.getId()
-                );
+                Toast.makeText(this, "只能拼接图片", Toast.LENGTH_SHORT).show();
+                return;
             }
-            urisToDelete.add(uri);
         }
-
-        ContentResolver resolver = getContentResolver();
-
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
-            // Android 11+ 使用批量删除请求
-            try {
-                PendingIntent pendingIntent = MediaStore.createDeleteRequest(
-                        resolver,
-                        urisToDelete
-                );
-                deleteRequestLauncher.launch(
-                        new IntentSenderRequest.Builder(pendingIntent.getIntentSender()).build()
-                );
-            } catch (Exception e) {
-                Toast.makeText(this, "删除失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        // 先截的在上面
+        selected.sort((p1, p2) -> p1.getDateAdded() != p2.getDateAdded()
+                ? Long.compare(p1.getDateAdded(), p2.getDateAdded())
+                : p1.getName().compareTo(p2.getName()));
+
+        buttonStitch.setEnabled(false);
+        buttonStitch.setText("拼接中…");
+        LongScreenshotStitcher stitcher = new LongScreenshotStitcher(this);
+        // 拼接要解码所有截图，耗时较长，放在后台通道，不占用文件修改通道
+        AppExecutors.getInstance().execute(AppExecutors.LANE_BACKGROUND, () -> {
+            long newId = stitcher.stitch(selected);
+            if (newId >= 0) {
+                // 和压缩生成的新图一样直接放进目录和索引，不等后台任务
+                PhotoManager photoManager = new PhotoManager(this);
+                List<Photo> stitched = photoManager.getPhotosByIds(Collections.singletonList(newId));
+                MediaCatalog.getInstance(this).putAll(stitched);
+                MediaIndex index = MediaIndex.getInstance(this);
+                for (Photo photo : stitched) {
+                    index.put(photo, photoManager.getDisplayEpochDay(photo));
+                }
             }
-        } else {
-            // Android 10 及以下，逐个删除
-            int deletedCount = 0;
-            for (Uri uri : urisToDelete) {
-                try {
-                    int deleted = resolver.delete(uri, null, null);
-                    if (deleted > 0) {
-                        deletedCount++;
-                    }
-                } catch (Exception e) {
-                    // 忽略单个删除错误
+            runOnUiThread(() -> {
+                if (isDestroyed()) {
+                    return;
+                }
+                buttonStitch.setText("拼接");
+                if (newId < 0) {
+                    Toast.makeText(this, "拼接失败（截图宽度需要相同）", Toast.LENGTH_SHORT).show();
+                    buttonStitch.setEnabled(photoAdapter.getSelectedCount() >= 2);
+                    return;
                 }
+                Toast.makeText(this, "已拼接 " + selected.size() + " 张截图，保存到 Pictures/ImageStitcher",
+                        Toast.LENGTH_SHORT).show();
+                exitSelectMode();
+                setResult(RESULT_OK);
+                loadPhotos();
+            });
+        });
+    }
+
+    private void deleteSelectedPhotos() {
+        photosToDelete = photoAdapter.getSelectedPhotos();
+        if (photosToDelete.isEmpty()) {
+            return;
+        }
+
+        buttonDelete.setEnabled(false);
+        bulkMediaMutator.delete(photosToDelete, result -> {
+            int deletedCount = result.getSucceededIds().size();
+            if (deletedCount == 0 && result.isCancelled()) {
+                Toast.makeText(this, "删除已取消", Toast.LENGTH_SHORT).show();
+                buttonDelete.setEnabled(true);
+                return;
+            }
+
+            String message = "已删除 " + deletedCount + " 个文件";
+            if (!result.getFailedIds().isEmpty()) {
+                message += "，" + result.getFailedIds().size() + " 个未删除";
             }
-            Toast.makeText(this, "已删除 " + deletedCount + " 个文件", Toast.LENGTH_SHORT).show();
+            Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
             exitSelectMode();
             setResult(RESULT_OK);
             loadPhotos();
+        });
+    }
+
+    /**
+     * 双指捏合切换网格密度（2/3/5/8列）
+     */
+    private void setupPinchToChangeColumns() {
+        ScaleGestureDetector scaleDetector = new ScaleGestureDetector(this,
+                new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+                    private float scale;
+
+                    @Override
+                    public boolean onScaleBegin(ScaleGestureDetector detector) {
+                        scale = 1f;
+                        return true;
+                    }
+
+                    @Override
+                    public boolean onScale(ScaleGestureDetector detector) {
+                        scale *= detector.getScaleFactor();
+                        // 一次捏合只切换一档
+                        if (scale > 1.3f) {
+                            changeColumns(GridDensity.sparser(columns));
+                            scale = 1f;
+                        } else if (scale < 0.75f) {
+                            changeColumns(GridDensity.denser(columns));
+                            scale = 1f;
+                        }
+                        return true;
+                    }
+                });
+
+        recyclerViewPhotos.addOnItemTouchListener(new RecyclerView.SimpleOnItemTouchListener() {
+            @Override
+            public boolean onInterceptTouchEvent(@NonNull RecyclerView rv, @NonNull MotionEvent e) {
+                scaleDetector.onTouchEvent(e);
+                // 双指时接管触摸，不再滚动列表
+                return scaleDetector.isInProgress() || e.getPointerCount() > 1;
+            }
+
+            @Override
+            public void onTouchEvent(@NonNull RecyclerView rv, @NonNull MotionEvent e) {
+                scaleDetector.onTouchEvent(e);
+            }
+        });
+    }
+
+    private void changeColumns(int newColumns) {
+        if (newColumns == columns) {
+            return;
+        }
+        // 保持当前第一项在切换后仍然可见
+        int anchor = gridLayoutManager.findFirstVisibleItemPosition();
+        columns = newColumns;
+        GridDensity.save(this, columns);
+        gridLayoutManager.setSpanCount(columns);
+        // 分组标题所在的行随列数变化，重新计算各项的偏移
+        recyclerViewPhotos.invalidateItemDecorations();
+        if (photoAdapter != null) {
+            photoAdapter.setThumbnailSize(GridDensity.thumbnailSize(columns));
+            photoAdapter.notifyItemRangeChanged(0, photoAdapter.getItemCount());
+        }
+        if (anchor != RecyclerView.NO_POSITION) {
+            gridLayoutManager.scrollToPositionWithOffset(anchor, 0);
         }
     }
 
     private void loadPhotos() {
-        photos = new ArrayList<>();
-        PhotoManager photoManager = new PhotoManager(this);
+        // 查询MediaStore放到前台通道，避免阻塞主线程
+        final int generation = ++loadGeneration;
+        AppExecutors.getInstance().execute(AppExecutors.LANE_FOREGROUND, () -> {
+            PhotoManager photoManager = new PhotoManager(this);
+            List<Photo> result;
+            SectionIndex sectionIndex = null;
+            List<Integer> duplicatePositions = new ArrayList<>();
+            if (isDateFolder && similarMode) {
+                // 相似视图：按感知哈希分组，哈希通常已在后台算好
+                result = new ArrayList<>();
+                ImageHashStore hashStore = ImageHashStore.getInstance(this);
+                List<List<Photo>> groups = hashStore.findSimilarGroups(photoManager.getPhotosForDate(folderName));
+                for (List<Photo> group : groups) {
+                    // 每组保留最新的一张，只有与它直接相似的才算重复
+                    Photo kept = group.get(0);
+                    for (int i = 0; i < group.size(); i++) {
+                        if (i > 0 && hashStore.isSimilar(kept, group.get(i))) {
+                            duplicatePositions.add(result.size());
+                        }
+                        result.add(group.get(i));
+                    }
+                }
+            } else if (isDateFolder) {
+                // 加载日期文件夹中的照片（基于显示日期）
+                result = photoManager.getPhotosForDate(folderName);
+            } else {
+                // 加载所有照片，按显示日期分组（排序和分组索引都在后台算好）
+                result = photoManager.getAllPhotos();
+                SectionIndex.sortByDisplayDay(result, photoManager);
+                sectionIndex = SectionIndex.build(result, photoManager);
+            }
+            final SectionIndex index = sectionIndex;
+            runOnUiThread(() -> {
+                if (generation != loadGeneration || isFinishing() || isDestroyed()) {
+                    return;
+                }
+                showPhotos(result, index);
+                if (similarMode) {
+                    onSimilarLoaded(duplicatePositions);
+                }
+            });
+        });
+    }
 
-        if (isDateFolder) {
-            // 加载日期文件夹中的照片（基于DATE_ADDED+3天）
-            photos = photoManager.getPhotosForDate(folderName);
-        } else {
-            // 加载所有照片
-            photos = photoManager.getAllPhotos();
-        }
+    private void showPhotos(List<Photo> result, SectionIndex sectionIndex) {
+        photos = result;
 
         photoAdapter = new PhotoAdapter(this, photos, position -> {
             Photo clickedPhoto = photos.get(position);
@@ -291,6 +495,9 @@ public class GalleryActivity extends AppCompatActivity {
 
         // 设置选择变化监听器
         photoAdapter.setOnSelectionChangedListener(selectedCount -> {
+            buttonPostpone.setEnabled(selectedCount > 0);
+            buttonPostpone.setText("3天后(" + selectedCount + ")");
+            buttonStitch.setEnabled(selectedCount >= 2);
             buttonDelete.setEnabled(selectedCount > 0);
             buttonDelete.setText("删除(" + selectedCount + ")");
             if (selectedCount == photos.size() && photos.size() > 0) {
@@ -300,6 +507,11 @@ public class GalleryActivity extends AppCompatActivity {
             }
         });
 
+        if (sectionIndex != null) {
+            dayHeaderDecoration.setSectionIndex(sectionIndex);
+            fastScroller.setSectionIndex(sectionIndex);
+        }
+        photoAdapter.setThumbnailSize(GridDensity.thumbnailSize(columns));
         recyclerViewPhotos.setAdapter(photoAdapter);
 
         // 只在日期文件夹中显示选择按钮
@@ -310,6 +522,152 @@ public class GalleryActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_gallery, menu);
+        MenuItem similarItem = menu.findItem(R.id.action_similar);
+        similarItem.setVisible(isDateFolder);
+        similarItem.setTitle(similarMode ? "全部" : "相似");
+        MenuItem compactItem = menu.findItem(R.id.action_compact);
+        compactItem.setVisible(!similarMode);
+        compactItem.setEnabled(!compacting);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == R.id.action_similar) {
+            if (photoAdapter != null && photoAdapter.isSelectMode()) {
+                exitSelectMode();
+            }
+            similarMode = !similarMode;
+            selectDuplicatesOnLoad = similarMode;
+            if (getSupportActionBar() != null) {
+                getSupportActionBar().setTitle(similarMode ? folderDisplayName + " · 相似" : folderDisplayName);
+            }
+            invalidateOptionsMenu();
+            loadPhotos();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_compact) {
+            showCompactDialog();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * 压缩当前列表（日期文件夹或所有图片）中的PNG截图，先选择格式和质量
+     */
+    private void showCompactDialog() {
+        if (photos == null || compacting || bulkMediaMutator.isRunning()) {
+            return;
+        }
+        List<Photo> candidates = ScreenshotCompactor.findCandidates(photos);
+        if (candidates.isEmpty()) {
+            Toast.makeText(this, "没有PNG截图", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        long totalSize = 0;
+        for (Photo photo : candidates) {
+            totalSize += photo.getSize();
+        }
+
+        String[] options = {"WebP（质量 90）", "WebP（质量 75）", "JPEG（质量 85）"};
+        int[] formats = {ScreenshotCompactor.FORMAT_WEBP, ScreenshotCompactor.FORMAT_WEBP,
+                ScreenshotCompactor.FORMAT_JPEG};
+        int[] qualities = {90, 75, 85};
+        new AlertDialog.Builder(this)
+            .setTitle("压缩 " + candidates.size() + " 张PNG截图（" + Formatter.formatShortFileSize(this, totalSize) + "）")
+            .setItems(options, (dialog, which) -> compactPhotos(candidates, formats[which], qualities[which]))
+            .setNegativeButton("取消", null)
+            .show();
+    }
+
+    private void compactPhotos(List<Photo> candidates, int format, int quality) {
+        compacting = true;
+        invalidateOptionsMenu();
+        ScreenshotCompactor compactor = new ScreenshotCompactor(this);
+        // compact 会一直等待自己的工作池，单独用一个线程，不占用 MediaJobQueue 和 BulkMediaMutator 使用的文件修改通道
+        ExecutorService coordinator = AppExecutors.getInstance().newWorkerPool("compact-coordinator", 1);
+        coordinator.execute(() -> {
+            ScreenshotCompactor.Result result = compactor.compact(candidates, format, quality,
+                    (done, total) -> {
+                        if (getSupportActionBar() != null && compacting) {
+                            getSupportActionBar().setSubtitle("压缩中 " + done + "/" + total);
+                        }
+                    });
+            runOnUiThread(() -> onCompacted(compactor, result));
+        });
+        coordinator.shutdown();
+    }
+
+    /**
+     * 新文件已写好，删除原文件（Android 11+ 需要用户确认）；原文件没删掉的，新文件也删掉
+     */
+    private void onCompacted(ScreenshotCompactor compactor, ScreenshotCompactor.Result result) {
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setSubtitle(null);
+        }
+        if (isDestroyed() || bulkMediaMutator.isRunning()) {
+            List<Long> originalIds = new ArrayList<>();
+            for (Photo photo : result.getOriginals()) {
+                originalIds.add(photo.getId());
+            }
+            AppExecutors.getInstance().execute(AppExecutors.LANE_MUTATION,
+                    () -> compactor.discard(result.getCompactedIds(originalIds)));
+            compacting = false;
+            return;
+        }
+        if (result.getOriginals().isEmpty()) {
+            Toast.makeText(this, "没有可以节省空间的图片", Toast.LENGTH_SHORT).show();
+            compacting = false;
+            invalidateOptionsMenu();
+            return;
+        }
+
+        bulkMediaMutator.delete(result.getOriginals(), r -> {
+            List<Long> discarded = result.getCompactedIds(r.getFailedIds());
+            AppExecutors.getInstance().execute(AppExecutors.LANE_MUTATION, () -> compactor.discard(discarded));
+
+            int compactedCount = r.getSucceededIds().size();
+            if (compactedCount == 0 && r.isCancelled()) {
+                Toast.makeText(this, "压缩已取消", Toast.LENGTH_SHORT).show();
+            } else {
+                String message = "已压缩 " + compactedCount + " 张，节省 "
+                        + Formatter.formatShortFileSize(this, result.getSavedBytes(r.getSucceededIds()));
+                int keptCount = result.getSkippedCount() + result.getFailedCount() + discarded.size();
+                if (keptCount > 0) {
+                    message += "，" + keptCount + " 张保持原样";
+                }
+                Toast.makeText(this, message, Toast.LENGTH_LONG).show();
+            }
+            compacting = false;
+            invalidateOptionsMenu();
+            setResult(RESULT_OK);
+            loadPhotos();
+        });
+    }
+
+    /**
+     * 相似视图加载完成：刚进入时直接选中重复的图片（与组内保留的图片直接相似的），可以用原有的删除按钮批量删除
+     * 只是经过其他图片传递才分到一组的不选中，由用户自己决定
+     */
+    private void onSimilarLoaded(List<Integer> duplicatePositions) {
+        if (photos.isEmpty()) {
+            if (selectDuplicatesOnLoad) {
+                Toast.makeText(this, "没有相似的图片", Toast.LENGTH_SHORT).show();
+            }
+            selectDuplicatesOnLoad = false;
+            return;
+        }
+        if (selectDuplicatesOnLoad) {
+            selectDuplicatesOnLoad = false;
+            enterSelectMode();
+            photoAdapter.selectPositions(duplicatePositions);
+        }
+    }
+
     @Override
     public boolean onSupportNavigateUp() {
         if (photoAdapter != null && photoAdapter.isSelectMode()) {
@@ -334,4 +692,10 @@ public class GalleryActivity extends AppCompatActivity {
         super.onResume();
         loadPhotos();
     }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        MediaJobQueue.getInstance(this).removeProgressListener(jobProgressListener);
+    }
 }
@@ -0,0 +1,77 @@
+package com.example.photogallery;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * 网格密度（列数）和对应的缩略图档位
+ * 每个列数使用固定的解码尺寸，Glide 按尺寸分别缓存，切换密度时不需要重新生成已有档位
+ */
+public class GridDensity {
+    private static final String PREFS_NAME = "GridDensity";
+    private static final String KEY_COLUMNS = "columns";
+
+    // 从稀到密
+    private static final int[] COLUMNS = {2, 3, 5, 8};
+    // 与 COLUMNS 对应的缩略图尺寸（像素）
+    private static final int[] THUMBNAIL_SIZES = {384, 384, 192, 96};
+    // 所有档位（从小到大），用于查找已缓存的相邻档位
+    private static final int[] TIERS = {96, 192, 384};
+
+    public static final int DEFAULT_COLUMNS = 3;
+
+    public static int load(Context context) {
+        int columns = prefs(context).getInt(KEY_COLUMNS, DEFAULT_COLUMNS);
+        return indexOf(columns) >= 0 ? columns : DEFAULT_COLUMNS;
+    }
+
+    public static void save(Context context, int columns) {
+        prefs(context).edit().putInt(KEY_COLUMNS, columns).apply();
+    }
+
+    /**
+     * 更密一档（捏合缩小），已经最密时返回原值
+     */
+    public static int denser(int columns) {
+        int index = indexOf(columns);
+        return index >= 0 && index + 1 < COLUMNS.length ? COLUMNS[index + 1] : columns;
+    }
+
+    /**
+     * 更稀一档（捏合放大），已经最稀时返回原值
+     */
+    public static int sparser(int columns) {
+        int index = indexOf(columns);
+        return index > 0 ? COLUMNS[index - 1] : columns;
+    }
+
+    public static int thumbnailSize(int columns) {
+        int index = indexOf(columns);
+        return index >= 0 ? THUMBNAIL_SIZES[index] : THUMBNAIL_SIZES[indexOf(DEFAULT_COLUMNS)];
+    }
+
+    /**
+     * 比指定尺寸小一档的缩略图尺寸，已是最小档时返回0
+     */
+    public static int lowerTier(int size) {
+        for (int i = TIERS.length - 1; i >= 0; i--) {
+            if (TIERS[i] < size) {
+                return TIERS[i];
+            }
+        }
+        return 0;
+    }
+
+    private static int indexOf(int columns) {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (COLUMNS[i] == columns) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -15,12 +15,10 @@ public class IconManager {
     private static final String KEY_IS_COMPLETED = "is_completed";
 
     private Context context;
-    private PhotoManager photoManager;
     private SharedPreferences prefs;
 
     public IconManager(Context context) {
-        this.context = context;
-        this.photoManager = new PhotoManager(context);
+        this.context = context.getApplicationContext();
         this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
     }
 
@@ -28,30 +26,23 @@ public class IconManager {
      * 检查并更新应用状态
      * 逻辑：所有日期文件夹都在当天之后 -> 已完成状态
      *      存在当天或之前的日期文件夹 -> 未完成状态
-     * 注意：APP图标不再切换，只更新小部件显示
+     * 注意：APP图标不再切换，只记录完成状态
      */
     public void updateAppIcon() {
-        Log.d(TAG, "开始更新应用图标状态");
-
         boolean shouldShowCompleted = areAllDateFoldersAfterToday();
         boolean isCurrentlyCompleted = getCompletedStatus();
 
         Log.d(TAG, "应该显示已完成: " + shouldShowCompleted + ", 当前状态: " + isCurrentlyCompleted);
 
-        // 只在状态改变时才更新
-        if (shouldShowCompleted && !isCurrentlyCompleted) {
-            Log.d(TAG, "状态改变: 设置为已完成");
-            setCompletedStatus(true);
-        } else if (!shouldShowCompleted && isCurrentlyCompleted) {
-            Log.d(TAG, "状态改变: 设置为未完成");
-            setCompletedStatus(false);
+        // 只在状态改变（或保存的完成日期已经过期）时才写入
+        // 小部件直接读取 MediaIndex 写入的汇总，并在午夜自动刷新，这里不需要再刷新
+        if (shouldShowCompleted != isCurrentlyCompleted
+                || (shouldShowCompleted && !getTodayWidgetDate().equals(prefs.getString(KEY_COMPLETED_DATE, "")))) {
+            Log.d(TAG, "状态改变: " + (shouldShowCompleted ? "设置为已完成" : "设置为未完成"));
+            setCompletedStatus(shouldShowCompleted);
         } else {
             Log.d(TAG, "状态未改变");
         }
-
-        // 无论状态是否改变，都更新Widget以确保显示正确
-        Log.d(TAG, "调用更新小部件方法");
-        CompletedDateWidget.updateAllWidgets(context);
     }
 
     /**
@@ -70,28 +61,17 @@ public class IconManager {
 
     /**
      * 检查所有日期文件夹是否都在当天之后
-     * 基于PhotoManager的真实日期分组（DATE_ADDED + 3天）
+     * 由 MediaIndex 维护最小显示日期，只需一次比较
      */
     private boolean areAllDateFoldersAfterToday() {
-        java.util.Map<String, List<Photo>> photosByDate = photoManager.getPhotosByDisplayDate();
-
-        // 如果没有日期文件夹，认为是已完成状态
-        if (photosByDate == null || photosByDate.isEmpty()) {
-            return true;
+        MediaIndex index = MediaIndex.getInstance(context);
+        if (!index.isLoaded()) {
+            // 还没有建立索引（例如只有小部件在运行），优先用持久化的媒体目录，没有时才查询媒体库
+            PhotoManager photoManager = new PhotoManager(context);
+            List<Photo> photos = MediaCatalog.getInstance(context).getPhotos();
+            index.rebuild(photos.isEmpty() ? photoManager.getAllPhotos() : photos, photoManager);
         }
-
-        String today = getTodayDateString();
-
-        // 检查是否所有日期文件夹都在今天之后
-        for (String dateFolder : photosByDate.keySet()) {
-            if (dateFolder.compareTo(today) <= 0) {
-                // 存在当天或之前的日期文件夹，未完成
-                return false;
-            }
-        }
-
-        // 所有日期文件夹都在今天之后，已完成
-        return true;
+        return index.isAllAfter(PhotoManager.getTodayEpochDay());
     }
 
     /**
@@ -104,8 +84,7 @@ public class IconManager {
 
         if (completed) {
             // 保存完成日期（格式: MM/dd，供小部件直接显示）
-            SimpleDateFormat sdf = new SimpleDateFormat("MM/dd", Locale.getDefault());
-            String currentDate = sdf.format(new Date());
+            String currentDate = getTodayWidgetDate();
             editor.putString(KEY_COMPLETED_DATE, currentDate);
             Log.d(TAG, "保存完成日期: " + currentDate);
         } else {
@@ -118,10 +97,10 @@ public class IconManager {
     }
 
     /**
-     * 获取今天的日期字符串 (格式: yyyy-MM-dd)
+     * 获取今天的日期字符串 (格式: MM/dd，与小部件显示一致)
      */
-    private String getTodayDateString() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+    private String getTodayWidgetDate() {
+        SimpleDateFormat sdf = new SimpleDateFormat("MM/dd", Locale.getDefault());
         return sdf.format(new Date());
     }
 
@@ -0,0 +1,348 @@
+package com.example.photogallery;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 图片的感知哈希（64位dHash）和相似图片查询
+ * 哈希从很小的解码图计算，保存在媒体目录旁边的文件中（按DATE_MODIFIED失效），
+ * 内存中用BK树按汉明距离查询，日期文件夹的"相似"视图直接用它分组
+ * 计算哈希需要解码，只在后台线程调用
+ * 无法解码的图片也记录下来（只有DATE_MODIFIED，没有哈希），文件修改前不再重新解码
+ */
+public class ImageHashStore {
+    private static final String TAG = "ImageHashStore";
+    private static final String HASH_FILE = "image_hashes.json";
+    // 汉明距离不超过这个值视为相似
+    public static final int SIMILAR_RADIUS = 6;
+    // 每计算这么多个保存一次，被中断时不用从头开始
+    private static final int SAVE_BATCH = 200;
+    // dHash 解码的最小边长（再缩小到 9x8）
+    private static final int DECODE_MIN_SIDE = 32;
+
+    private static ImageHashStore instance;
+
+    private final File hashFile;
+    private final Gson gson = new Gson();
+    // 媒体ID -> {DATE_MODIFIED, 哈希}，无法计算哈希的为 {DATE_MODIFIED}；null表示还没有从文件读入
+    private Map<Long, long[]> hashes;
+    private BkTree tree;
+    // 树中已经失效的条目数（删除或重新计算），过多时重建
+    private int staleInTree = 0;
+
+    private ImageHashStore(Context context) {
+        hashFile = new File(context.getApplicationContext().getFilesDir(), HASH_FILE);
+    }
+
+    public static synchronized ImageHashStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImageHashStore(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 为还没有哈希（或文件已修改）的图片计算哈希，视频跳过
+     */
+    public void indexAll(List<Photo> photos) {
+        List<Photo> missing = new ArrayList<>();
+        synchronized (this) {
+            ensureLoaded();
+            for (Photo photo : photos) {
+                if (!photo.isVideo() && !isCurrent(photo)) {
+                    missing.add(photo);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        Log.d(TAG, "计算哈希: " + missing.size());
+        int sinceSave = 0;
+        for (Photo photo : missing) {
+            Long hash = computeDHash(photo.getPath());
+            synchronized (this) {
+                put(photo, hash);
+                if (++sinceSave >= SAVE_BATCH) {
+                    save();
+                    sinceSave = 0;
+                }
+            }
+        }
+        synchronized (this) {
+            save();
+        }
+    }
+
+    /**
+     * 找出列表中相似的图片组（每组至少2张，组内按DATE_ADDED倒序）
+     * 缺少的哈希会先计算，所以在后台线程调用
+     */
+    public List<List<Photo>> findSimilarGroups(List<Photo> photos) {
+        indexAll(photos);
+
+        Map<Long, Photo> byId = new LinkedHashMap<>();
+        for (Photo photo : photos) {
+            if (!photo.isVideo()) {
+                byId.put(photo.getId(), photo);
+            }
+        }
+
+        // 并查集：相似关系的传递闭包
+        Map<Long, Long> parent = new HashMap<>();
+        synchronized (this) {
+            for (Photo photo : byId.values()) {
+                long[] entry = hashes.get(photo.getId());
+                if (!hasHash(entry)) {
+                    continue;
+                }
+                for (long otherId : tree.search(entry[1], SIMILAR_RADIUS)) {
+                    if (otherId == photo.getId() || !byId.containsKey(otherId)) {
+                        continue;
+                    }
+                    // 树中可能有旧的哈希，用当前值确认
+                    long[] other = hashes.get(otherId);
+                    if (hasHash(other) && BkTree.distance(entry[1], other[1]) <= SIMILAR_RADIUS) {
+                        union(parent, photo.getId(), otherId);
+                    }
+                }
+            }
+        }
+
+        Map<Long, List<Photo>> groupsByRoot = new LinkedHashMap<>();
+        for (Photo photo : byId.values()) {
+            if (!parent.containsKey(photo.getId())) {
+                continue;
+            }
+            long root = find(parent, photo.getId());
+            List<Photo> group = groupsByRoot.get(root);
+            if (group == null) {
+                group = new ArrayList<>();
+                groupsByRoot.put(root, group);
+            }
+            group.add(photo);
+        }
+
+        List<List<Photo>> groups = new ArrayList<>();
+        for (List<Photo> group : groupsByRoot.values()) {
+            if (group.size() > 1) {
+                group.sort((p1, p2) -> Long.compare(p2.getDateAdded(), p1.getDateAdded()));
+                groups.add(group);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * 两张图片的哈希是否直接相似（不经过组内其他图片的传递）
+     * 组是相似关系的传递闭包，首尾两张可能相差很多，只有直接相似的才能当作重复
+     */
+    public synchronized boolean isSimilar(Photo a, Photo b) {
+        ensureLoaded();
+        long[] entryA = hashes.get(a.getId());
+        long[] entryB = hashes.get(b.getId());
+        return hasHash(entryA) && hasHash(entryB) && BkTree.distance(entryA[1], entryB[1]) <= SIMILAR_RADIUS;
+    }
+
+    /**
+     * 移除已删除的媒体
+     */
+    public synchronized void removeAll(List<Long> mediaIds) {
+        ensureLoaded();
+        boolean changed = false;
+        for (long mediaId : mediaIds) {
+            long[] removed = hashes.remove(mediaId);
+            if (removed != null) {
+                changed = true;
+                if (hasHash(removed)) {
+                    staleInTree++;
+                }
+            }
+        }
+        if (changed) {
+            rebuildTreeIfStale();
+            save();
+        }
+    }
+
+    /**
+     * 已有当前版本的记录（包括无法计算哈希的），不用重新解码
+     */
+    private boolean isCurrent(Photo photo) {
+        long[] entry = hashes.get(photo.getId());
+        return entry != null && entry[0] == photo.getDateModified();
+    }
+
+    private static boolean hasHash(long[] entry) {
+        return entry != null && entry.length > 1;
+    }
+
+    /**
+     * @param hash 为null时只记录DATE_MODIFIED，不加入BK树
+     */
+    private void put(Photo photo, Long hash) {
+        long[] entry = hash != null
+                ? new long[] {photo.getDateModified(), hash}
+                : new long[] {photo.getDateModified()};
+        long[] old = hashes.put(photo.getId(), entry);
+        if (hasHash(old)) {
+            staleInTree++;
+        }
+        if (hash != null) {
+            tree.add(hash, photo.getId());
+        }
+        rebuildTreeIfStale();
+    }
+
+    private void rebuildTreeIfStale() {
+        if (staleInTree <= hashes.size() / 4) {
+            return;
+        }
+        tree = new BkTree();
+        addAllToTree();
+        staleInTree = 0;
+    }
+
+    /**
+     * dHash：缩小到 9x8 灰度，每行比较相邻像素的亮度，得到 8x8 = 64 位
+     */
+    static Long computeDHash(String path) {
+        if (path == null) {
+            return null;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= DECODE_MIN_SIDE
+                && options.outHeight / (sampleSize * 2) >= DECODE_MIN_SIDE) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        Bitmap decoded = BitmapFactory.decodeFile(path, options);
+        if (decoded == null) {
+            return null;
+        }
+        Bitmap small = Bitmap.createScaledBitmap(decoded, 9, 8, true);
+        if (small != decoded) {
+            decoded.recycle();
+        }
+
+        int[] pixels = new int[9 * 8];
+        small.getPixels(pixels, 0, 9, 0, 0, 9, 8);
+        small.recycle();
+
+        long hash = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                hash <<= 1;
+                if (luminance(pixels[y * 9 + x]) > luminance(pixels[y * 9 + x + 1])) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    private static int luminance(int color) {
+        int r = (color >> 16) & 0xFF;
+        int g = (color >> 8) & 0xFF;
+        int b = color & 0xFF;
+        return (r * 299 + g * 587 + b * 114) / 1000;
+    }
+
+    private static long find(Map<Long, Long> parent, long id) {
+        long root = id;
+        while (parent.get(root) != root) {
+            root = parent.get(root);
+        }
+        // 路径压缩
+        while (parent.get(id) != root) {
+            long next = parent.get(id);
+            parent.put(id, root);
+            id = next;
+        }
+        return root;
+    }
+
+    private static void union(Map<Long, Long> parent, long a, long b) {
+        if (!parent.containsKey(a)) {
+            parent.put(a, a);
+        }
+        if (!parent.containsKey(b)) {
+            parent.put(b, b);
+        }
+        long rootA = find(parent, a);
+        long rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent.put(rootA, rootB);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (hashes != null) {
+            return;
+        }
+        hashes = new HashMap<>();
+        tree = new BkTree();
+        if (hashFile.exists()) {
+            try (Reader reader = new InputStreamReader(new FileInputStream(hashFile), StandardCharsets.UTF_8)) {
+                Map<Long, long[]> saved = gson.fromJson(reader, new TypeToken<Map<Long, long[]>>() {}.getType());
+                if (saved != null) {
+                    hashes.putAll(saved);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "读取哈希失败", e);
+            }
+        }
+        addAllToTree();
+    }
+
+    private void addAllToTree() {
+        for (Map.Entry<Long, long[]> entry : hashes.entrySet()) {
+            if (hasHash(entry.getValue())) {
+                tree.add(entry.getValue()[1], entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * 写入哈希文件（先写临时文件再重命名）
+     */
+    private void save() {
+        File tempFile = new File(hashFile.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
+            gson.toJson(hashes, writer);
+        } catch (IOException e) {
+            Log.e(TAG, "写入哈希失败", e);
+            return;
+        }
+        if (!tempFile.renameTo(hashFile)) {
+            Log.e(TAG, "替换哈希文件失败");
+        }
+    }
+}
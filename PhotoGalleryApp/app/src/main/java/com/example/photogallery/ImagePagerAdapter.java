@@ -3,6 +3,7 @@ package com.example.photogallery;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -11,12 +12,16 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.resource.bitmap.DownsampleStrategy;
+import com.bumptech.glide.load.resource.bitmap.Downsampler;
 import com.bumptech.glide.request.target.CustomTarget;
 import com.bumptech.glide.request.transition.Transition;
 import java.io.File;
 import java.util.List;
 
 public class ImagePagerAdapter extends RecyclerView.Adapter<ImagePagerAdapter.ImageViewHolder> {
+    private static final String TAG = "ImagePagerAdapter";
     private Context context;
     private List<Photo> photos;
     private OnImageClickListener onImageClickListener;
@@ -55,20 +60,45 @@ public class ImagePagerAdapter extends RecyclerView.Adapter<ImagePagerAdapter.Im
             }
         });
 
-        // 获取屏幕尺寸
-        int screenWidth = context.getResources().getDisplayMetrics().widthPixels;
-        int screenHeight = context.getResources().getDisplayMetrics().heightPixels;
+        holder.boundId = photo.getId();
+        if (holder.target != null) {
+            Glide.with(context).clear(holder.target);
+            holder.target = null;
+        }
+
+        // 索引中有尺寸（已按方向旋转）：直接规划解码并按解码后的尺寸显示占位，不用读文件
+        // 占位和解码结果一样大，换上位图时不会重新适配，解码期间的缩放和平移都保留
+        int width = photo.getDisplayWidth();
+        int height = photo.getDisplayHeight();
+        if (width > 0 && height > 0) {
+            DecodePlanner.Plan plan = DecodePlanner.plan(context, width, height);
+            holder.imageView.setPlaceholderSize(plan.width, plan.height);
+            loadImage(holder, photo, plan);
+            return;
+        }
 
-        // 限制最大尺寸：最大边不超过4096像素（适合5倍缩放）
-        // 同时保证不会超过Canvas绘制限制
-        int maxSize = Math.min(4096, Math.max(screenWidth, screenHeight) * 3);
+        // 没有尺寸（旧的索引或刚写入的文件）：先在后台读出尺寸
+        AppExecutors.getInstance().execute(AppExecutors.LANE_FOREGROUND, () -> {
+            int[] size = DecodePlanner.readSize(photo.getPath());
+            DecodePlanner.Plan plan = DecodePlanner.plan(context, size[0], size[1]);
+            AppExecutors.getInstance().mainThread().execute(() -> {
+                if (holder.boundId == photo.getId()) {
+                    loadImage(holder, photo, plan);
+                }
+            });
+        });
+    }
 
-        Glide.with(context)
+    private void loadImage(ImageViewHolder holder, Photo photo, DecodePlanner.Plan plan) {
+        Log.d(TAG, "解码 " + photo.getName() + ": " + plan);
+        holder.target = Glide.with(context)
                 .asBitmap()
                 .load(new File(photo.getPath()))
-                .override(maxSize, maxSize)
-                .downsample(com.bumptech.glide.load.resource.bitmap.DownsampleStrategy.CENTER_INSIDE)
-                .format(com.bumptech.glide.load.DecodeFormat.PREFER_RGB_565)
+                // 采样后的尺寸正好等于 override，Glide 只做2的幂采样，不再额外缩放
+                .override(plan.width, plan.height)
+                .downsample(DownsampleStrategy.CENTER_INSIDE)
+                .format(plan.config == Bitmap.Config.RGB_565 ? DecodeFormat.PREFER_RGB_565 : DecodeFormat.PREFER_ARGB_8888)
+                .set(Downsampler.ALLOW_HARDWARE_CONFIG, plan.isHardware())
                 .into(new CustomTarget<Bitmap>() {
                     @Override
                     public void onResourceReady(@NonNull Bitmap resource, @Nullable Transition<? super Bitmap> transition) {
@@ -78,6 +108,8 @@ public class ImagePagerAdapter extends RecyclerView.Adapter<ImagePagerAdapter.Im
 
                     @Override
                     public void onLoadCleared(@Nullable Drawable placeholder) {
+                        // 位图会被Glide回收复用，不能继续显示
+                        holder.imageView.setImageDrawable(placeholder);
                     }
                 });
     }
@@ -101,6 +133,9 @@ public class ImagePagerAdapter extends RecyclerView.Adapter<ImagePagerAdapter.Im
 
     static class ImageViewHolder extends RecyclerView.ViewHolder {
         TouchImageView imageView;
+        // 当前绑定的媒体ID，丢弃过期的解码计划
+        long boundId = -1;
+        CustomTarget<Bitmap> target;
 
         public ImageViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -1,14 +1,7 @@
 package com.example.photogallery;
 
-import android.app.PendingIntent;
-import android.app.RecoverableSecurityException;
-import android.content.ContentResolver;
-import android.content.ContentUris;
 import android.content.SharedPreferences;
-import android.net.Uri;
-import android.os.Build;
 import android.os.Bundle;
-import android.provider.MediaStore;
 import android.view.MotionEvent;
 import android.view.View;
 import android.widget.Button;
@@ -16,16 +9,14 @@ import android.widget.LinearLayout;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
 import android.widget.Toast;
-import androidx.activity.result.ActivityResultLauncher;
-import androidx.activity.result.IntentSenderRequest;
-import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.viewpager2.widget.ViewPager2;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class ImageViewerActivity extends AppCompatActivity {
     private ViewPager2 viewPager;
@@ -40,20 +31,16 @@ public class ImageViewerActivity extends AppCompatActivity {
     private int currentPosition;
     private boolean controlsVisible = true;
     private ImagePagerAdapter adapter;
-    private ActivityResultLauncher<IntentSenderRequest> deleteRequestLauncher;
-    private ActivityResultLauncher<IntentSenderRequest> delayDeleteRequestLauncher;
+    private BulkMediaMutator bulkMediaMutator;
     private String folderName;
     private boolean isDateFolder;
-    private FileOperationHelper fileOperationHelper;
-    private Photo photoToDelay; // 临时存储待延迟的图片
-    private int positionToDelay; // 临时存储待延迟的位置
-    private long newPhotoIdForDelay; // 临时存储延迟操作中新创建的照片ID
+    private PhotoManager photoManager;
 
     // 悬浮按钮拖动相关变量
     private float dX, dY;
 
     // 撤销管理器
-    private PendingDeleteManager pendingDeleteManager = new PendingDeleteManager();
+    private PendingDeleteManager pendingDeleteManager;
 
     // SharedPreferences 相关
     private static final String PREFS_NAME = "FloatingButtonPrefs";
@@ -66,30 +53,8 @@ public class ImageViewerActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_image_viewer);
 
-        // 初始化删除请求启动器（用于退出时批量删除）
-        deleteRequestLauncher = registerForActivityResult(
-                new ActivityResultContracts.StartIntentSenderForResult(),
-                result -> {
-                    if (result.getResultCode() == RESULT_OK) {
-                        // 用户确认删除，清空队列并退出
-                        pendingDeleteManager.clear();
-                        setResult(RESULT_OK);
-                        finish();
-                    } else {
-                        // 用户取消删除，恢复所有照片到列表
-                        Toast.makeText(this, "删除已取消，文件已恢复", Toast.LENGTH_SHORT).show();
-                        restoreAllPendingDeletes();
-                    }
-                }
-        );
-
-        // 初始化延迟操作中的删除请求启动器（暂不使用）
-        delayDeleteRequestLauncher = registerForActivityResult(
-                new ActivityResultContracts.StartIntentSenderForResult(),
-                result -> {
-                    // 暂不使用
-                }
-        );
+        // 退出时批量移到回收站（Android 10及以下为永久删除）
+        bulkMediaMutator = new BulkMediaMutator(this);
 
         viewPager = findViewById(R.id.viewPager);
         layoutControls = findViewById(R.id.layoutControls);
@@ -105,7 +70,8 @@ public class ImageViewerActivity extends AppCompatActivity {
         folderName = getIntent().getStringExtra("folder_name");
         isDateFolder = getIntent().getBooleanExtra("is_date_folder", false);
 
-        fileOperationHelper = new FileOperationHelper(this);
+        photoManager = new PhotoManager(this);
+        pendingDeleteManager = new PendingDeleteManager(this);
 
         // 初始化 SharedPreferences
         prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
@@ -123,6 +89,7 @@ public class ImageViewerActivity extends AppCompatActivity {
         viewPager.setAdapter(adapter);
         viewPager.setCurrentItem(currentPosition, false);
         viewPager.setOffscreenPageLimit(1); // 预加载前后各一张图片
+        viewPager.registerOnPageChangeCallback(new AppExecutors.PauseOnSwipeCallback());
 
         viewPager.registerOnPageChangeCallback(new ViewPager2.OnPageChangeCallback() {
             @Override
@@ -186,72 +153,18 @@ public class ImageViewerActivity extends AppCompatActivity {
         }
 
         Photo currentPhoto = photos.get(currentPosition);
-        photoToDelay = currentPhoto; // 保存引用
-        positionToDelay = currentPosition; // 保存位置
-
-        Toast.makeText(this, "正在复制文件...", Toast.LENGTH_SHORT).show();
-
-        // 第一步：复制文件（新文件会有新的DATE_ADDED）
-        new Thread(() -> {
-            long newPhotoId = fileOperationHelper.copyImageFile(currentPhoto);
-
-            runOnUiThread(() -> {
-                if (newPhotoId == -1) {
-                    Toast.makeText(this, "复制文件失败", Toast.LENGTH_SHORT).show();
-                    return;
-                }
 
-                newPhotoIdForDelay = newPhotoId;
-
-                // 第二步：软删除原文件（从列表移除，退出时才真正删除）
-                // 添加到撤销队列
-                pendingDeleteManager.addPendingDelete(
-                    new PendingDeleteManager.PendingDelete(
-                        photoToDelay, positionToDelay,
-                        PendingDeleteManager.PendingDelete.TYPE_DELAY, newPhotoIdForDelay
-                    )
-                );
-                performDelayCleanup();
-            });
-        }).start();
-    }
+        // 只修改显示日期覆盖表，不复制文件，撤销时恢复之前的值
+        long previousDisplayDay = photoManager.postpone(currentPhoto, PhotoManager.DELAY_DAYS);
 
-    /**
-     * 从MediaStore中删除照片
-     */
-    private void deletePhotoFromMediaStore(Photo photo, Runnable onSuccess) {
-        Uri photoUri = ContentUris.withAppendedId(
-                MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
-                photo.getId()
+        // 从列表移除，添加到撤销队列
+        pendingDeleteManager.addPendingDelete(
+            new PendingDeleteManager.PendingDelete(
+                currentPhoto, currentPosition,
+                PendingDeleteManager.PendingDelete.TYPE_DELAY, previousDisplayDay
+            )
         );
-
-        ContentResolver resolver = getContentResolver();
-
-        try {
-            int deletedRows = resolver.delete(photoUri, null, null);
-            if (deletedRows > 0) {
-                onSuccess.run();
-            } else {
-                Toast.makeText(this, "删除失败", Toast.LENGTH_SHORT).show();
-            }
-        } catch (SecurityException e) {
-            // Android 10+ 需要用户确认
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-                try {
-                    PendingIntent pendingIntent = MediaStore.createDeleteRequest(
-                            resolver,
-                            Collections.singletonList(photoUri)
-                    );
-                    delayDeleteRequestLauncher.launch(
-                            new IntentSenderRequest.Builder(pendingIntent.getIntentSender()).build()
-                    );
-                } catch (Exception ex) {
-                    Toast.makeText(this, "删除失败: " + ex.getMessage(), Toast.LENGTH_SHORT).show();
-                }
-            } else {
-                Toast.makeText(this, "删除失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-            }
-        }
+        performDelayCleanup();
     }
 
     /**
@@ -312,7 +225,10 @@ public class ImageViewerActivity extends AppCompatActivity {
                 )
             );
             performDeleteCleanup();
-            Toast.makeText(this, "已删除（可撤销，退出后永久删除）", Toast.LENGTH_SHORT).show();
+            // Android 11+退出后移到系统回收站，之后还可以在"最近删除"中恢复
+            Toast.makeText(this, BulkMediaMutator.isTrashSupported()
+                    ? "已删除（可撤销，退出后移到回收站）"
+                    : "已删除（可撤销，退出后永久删除）", Toast.LENGTH_SHORT).show();
         }
     }
 
@@ -380,31 +296,18 @@ public class ImageViewerActivity extends AppCompatActivity {
             updatePageInfo();
             Toast.makeText(this, "已撤销删除: " + photo.getName(), Toast.LENGTH_SHORT).show();
         } else if (pendingDelete.getActionType() == PendingDeleteManager.PendingDelete.TYPE_DELAY) {
-            // 撤销延迟操作：删除新创建的副本，恢复原照片到列表
-            long newPhotoId = pendingDelete.getNewPhotoId();
-            if (newPhotoId != -1) {
-                // 删除新创建的副本
-                Uri newPhotoUri = ContentUris.withAppendedId(
-                        MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
-                        newPhotoId
-                );
-                try {
-                    getContentResolver().delete(newPhotoUri, null, null);
-
-                    // 恢复原照片到列表
-                    int position = Math.min(originalPosition, photos.size());
-                    photos.add(position, photo);
-                    adapter.notifyItemInserted(position);
-
-                    currentPosition = position;
-                    viewPager.setCurrentItem(currentPosition, false);
-
-                    updatePageInfo();
-                    Toast.makeText(this, "已撤销延迟操作: " + photo.getName(), Toast.LENGTH_SHORT).show();
-                } catch (Exception e) {
-                    Toast.makeText(this, "撤销失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                }
-            }
+            // 撤销延迟操作：恢复原来的显示日期，恢复照片到列表
+            photoManager.undoPostpone(photo, pendingDelete.getPreviousDisplayDay());
+
+            int position = Math.min(originalPosition, photos.size());
+            photos.add(position, photo);
+            adapter.notifyItemInserted(position);
+
+            currentPosition = position;
+            viewPager.setCurrentItem(currentPosition, false);
+
+            updatePageInfo();
+            Toast.makeText(this, "已撤销延迟操作: " + photo.getName(), Toast.LENGTH_SHORT).show();
         }
 
         updateUndoButton();
@@ -423,87 +326,89 @@ public class ImageViewerActivity extends AppCompatActivity {
             return;
         }
 
-        // 收集所有需要删除的URI
-        List<Uri> urisToDelete = new ArrayList<>();
+        // 收集所有需要删除的照片（延迟操作只修改了显示日期，不需要删除）
+        List<Photo> photosToDelete = new ArrayList<>();
         for (PendingDeleteManager.PendingDelete pending : pendingDeletes) {
-            Photo photo = pending.getPhoto();
-            Uri photoUri = ContentUris.withAppendedId(
-                    MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
-                    photo.getId()
-            );
-            urisToDelete.add(photoUri);
+            if (pending.getActionType() == PendingDeleteManager.PendingDelete.TYPE_DELETE) {
+                photosToDelete.add(pending.getPhoto());
+            }
         }
 
-        // 使用批量删除请求
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
-            // Android 11+ 使用批量删除请求
-            try {
-                PendingIntent pendingIntent = MediaStore.createDeleteRequest(
-                        getContentResolver(),
-                        urisToDelete
-                );
-                deleteRequestLauncher.launch(
-                        new IntentSenderRequest.Builder(pendingIntent.getIntentSender()).build()
-                );
-            } catch (Exception e) {
-                Toast.makeText(this, "删除失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                pendingDeleteManager.clear();
-                setResult(RESULT_OK);
-                finish();
+        if (photosToDelete.isEmpty()) {
+            pendingDeleteManager.clear();
+            setResult(RESULT_OK);
+            finish();
+            return;
+        }
+
+        // Android 11+移到系统回收站，只需一次确认，之后可在主页的"最近删除"中恢复
+        bulkMediaMutator.trash(photosToDelete, result -> {
+            if (BulkMediaMutator.isTrashSupported() && !result.getSucceededIds().isEmpty()) {
+                TrashStore.getInstance(this).addAll(result.filterSucceeded(photosToDelete));
             }
-        } else {
-            // Android 10 及以下，逐个删除
-            int deletedCount = 0;
-            for (Uri uri : urisToDelete) {
-                try {
-                    int deleted = getContentResolver().delete(uri, null, null);
-                    if (deleted > 0) {
-                        deletedCount++;
-                    }
-                } catch (Exception e) {
-                    // 忽略单个删除错误
-                }
+            if (result.isCancelled()) {
+                // 用户取消删除，恢复未删除的照片到列表
+                Toast.makeText(this, "删除已取消，文件已恢复", Toast.LENGTH_SHORT).show();
+                restorePendingDeletes(new HashSet<>(result.getSucceededIds()));
+                return;
+            }
+            if (!result.getFailedIds().isEmpty()) {
+                Toast.makeText(this, result.getFailedIds().size() + " 个文件删除失败", Toast.LENGTH_SHORT).show();
             }
             pendingDeleteManager.clear();
             setResult(RESULT_OK);
             finish();
-        }
+        });
     }
 
     /**
-     * 恢复所有待删除的照片到列表（用户取消删除时）
+     * 恢复待删除的照片到列表（用户取消删除时）
+     * 一次性计算最终位置并重建列表，只发出一次差异通知
+     *
+     * @param deletedIds 已经确认删除的照片，不再恢复
      */
-    private void restoreAllPendingDeletes() {
-        List<PendingDeleteManager.PendingDelete> pendingDeletes = pendingDeleteManager.getAllPendingDeletes();
+    private void restorePendingDeletes(Set<Long> deletedIds) {
+        List<PendingDeleteManager.PendingDelete> restored = new ArrayList<>();
+        for (PendingDeleteManager.PendingDelete pending : pendingDeleteManager.getAllPendingDeletes()) {
+            // 延迟操作已经生效（只修改了显示日期），不受删除取消的影响
+            if (pending.getActionType() == PendingDeleteManager.PendingDelete.TYPE_DELETE
+                    && !deletedIds.contains(pending.getPhoto().getId())) {
+                restored.add(pending);
+            }
+        }
 
-        // 按原始位置排序，从后往前恢复
-        for (int i = pendingDeletes.size() - 1; i >= 0; i--) {
-            PendingDeleteManager.PendingDelete pending = pendingDeletes.get(i);
-
-            if (pending.getActionType() == PendingDeleteManager.PendingDelete.TYPE_DELAY) {
-                // 延迟操作：需要删除新创建的副本
-                long newPhotoId = pending.getNewPhotoId();
-                if (newPhotoId != -1) {
-                    Uri newPhotoUri = ContentUris.withAppendedId(
-                            MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
-                            newPhotoId
-                    );
-                    try {
-                        getContentResolver().delete(newPhotoUri, null, null);
-                    } catch (Exception e) {
-                        // 忽略错误
-                    }
-                }
+        final List<Photo> oldPhotos = new ArrayList<>(photos);
+        final List<Photo> newPhotos = PendingDeleteManager.buildRestoredList(oldPhotos, restored);
+
+        // 列表只有插入，用ID比较即可
+        DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldPhotos.size();
             }
 
-            // 恢复照片到列表
-            Photo photo = pending.getPhoto();
-            int position = Math.min(pending.getOriginalPosition(), photos.size());
-            photos.add(position, photo);
-            adapter.notifyItemInserted(position);
-        }
+            @Override
+            public int getNewListSize() {
+                return newPhotos.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return oldPhotos.get(oldItemPosition).getId() == newPhotos.get(newItemPosition).getId();
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                return true;
+            }
+        }, false);
+
+        photos.clear();
+        photos.addAll(newPhotos);
+        diff.dispatchUpdatesTo(adapter);
 
         pendingDeleteManager.clear();
+        currentPosition = Math.max(0, Math.min(currentPosition, photos.size() - 1));
         updatePageInfo();
         updateUndoButton();
     }
@@ -517,6 +422,9 @@ public class ImageViewerActivity extends AppCompatActivity {
      * 完成Activity并执行待删除操作
      */
     private void finishWithPendingDeletes() {
+        if (bulkMediaMutator.isRunning()) {
+            return;
+        }
         if (pendingDeleteManager.canUndo()) {
             // 有待删除的文件，执行删除
             executePendingDeletes();
@@ -0,0 +1,271 @@
+package com.example.photogallery;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Environment;
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 把多张截图（从上到下的顺序）拼成一张长图，保存到 Pictures/ImageStitcher
+ * 1. 每张图按水平条带解码，每一行压缩成一个行签名（分段亮度平均值的哈希），只保留签名
+ * 2. 相邻两张图开头和结尾相同的行是固定的状态栏、标题栏和导航栏，在中间的滚动区域中找最大的重叠
+ * 3. 输出时用 BitmapRegionDecoder 按条带只解码每张图需要的区域，逐行写入 StreamingPngWriter
+ * 任何时候只持有一个条带的位图，峰值内存与截图数量和长图高度无关；在后台线程调用
+ */
+public class LongScreenshotStitcher {
+    private static final String TAG = "LongScreenshotStitcher";
+    private static final String OUTPUT_DIR = "ImageStitcher";
+    // 每次解码的条带高度
+    private static final int BAND_HEIGHT = 256;
+    // 行签名把一行分成这么多段，最右边一段（滚动条所在位置）不参与
+    private static final int SIGNATURE_BUCKETS = 32;
+    // 重叠至少这么多行才算找到
+    private static final int MIN_OVERLAP_ROWS = 48;
+    // 重叠区域中至少有这么多行与上一行不同，避免大片纯色背景被误判为重叠
+    private static final int MIN_DISTINCT_ROWS = 8;
+    // 重叠区域中允许不一致的行（动画、光标等）的比例
+    private static final int MAX_MISMATCH_PERCENT = 2;
+
+    /**
+     * 每张图在输出中使用的行范围 [top, bottom)
+     */
+    private static class Segment {
+        final Photo photo;
+        int top;
+        int bottom;
+
+        Segment(Photo photo, int height) {
+            this.photo = photo;
+            this.top = 0;
+            this.bottom = height;
+        }
+    }
+
+    private final FileOperationHelper fileOperationHelper;
+
+    public LongScreenshotStitcher(Context context) {
+        this.fileOperationHelper = new FileOperationHelper(context.getApplicationContext());
+    }
+
+    /**
+     * 拼接并保存
+     *
+     * @param photos 按从上到下顺序排列的截图，宽度必须相同
+     * @return 新图片的ID，失败返回-1
+     */
+    public long stitch(List<Photo> photos) {
+        if (photos.size() < 2) {
+            return -1;
+        }
+        List<Segment> segments = new ArrayList<>();
+        long[] previousSignatures = null;
+        int width = -1;
+        try {
+            for (Photo photo : photos) {
+                BitmapRegionDecoder decoder = newDecoder(photo);
+                long[] signatures;
+                try {
+                    if (width < 0) {
+                        width = decoder.getWidth();
+                    } else if (decoder.getWidth() != width) {
+                        Log.w(TAG, "截图宽度不同: " + photo.getPath());
+                        return -1;
+                    }
+                    signatures = rowSignatures(decoder);
+                } finally {
+                    decoder.recycle();
+                }
+                Segment segment = new Segment(photo, signatures.length);
+                if (previousSignatures != null) {
+                    joinSegments(segments.get(segments.size() - 1), previousSignatures, segment, signatures);
+                }
+                segments.add(segment);
+                previousSignatures = signatures;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "读取截图失败", e);
+            return -1;
+        }
+
+        int totalHeight = 0;
+        for (Segment segment : segments) {
+            // 完全被前后重叠覆盖的图不输出
+            totalHeight += Math.max(0, segment.bottom - segment.top);
+        }
+        Log.d(TAG, "拼接 " + segments.size() + " 张，输出 " + width + "x" + totalHeight);
+
+        String name = "Stitched_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date()) + ".png";
+        File target = new File(new File(Environment.getExternalStoragePublicDirectory(
+                Environment.DIRECTORY_PICTURES), OUTPUT_DIR), name);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            // Android 9及以下直接写文件路径，目录需要存在
+            target.getParentFile().mkdirs();
+        }
+        final int outputWidth = width;
+        final int outputHeight = totalHeight;
+        return fileOperationHelper.insertImage(target.getPath(), name, "image/png", out -> {
+            StreamingPngWriter png = new StreamingPngWriter(out, outputWidth, outputHeight);
+            for (Segment segment : segments) {
+                writeSegment(segment, outputWidth, png);
+            }
+            png.finish();
+        });
+    }
+
+    /**
+     * 确定相邻两张图的衔接位置：上一张截到底部固定区域之前，下一张从重叠结束的地方开始
+     */
+    private static void joinSegments(Segment upper, long[] a, Segment lower, long[] b) {
+        int maxFixed = Math.min(a.length, b.length) / 3;
+        int header = 0;
+        while (header < maxFixed && a[header] == b[header]) {
+            header++;
+        }
+        int footer = 0;
+        while (footer < maxFixed && a[a.length - 1 - footer] == b[b.length - 1 - footer]) {
+            footer++;
+        }
+
+        int aEnd = a.length - footer;
+        int overlap = findOverlap(a, header, aEnd, b, header, b.length - footer);
+        upper.bottom = Math.max(upper.top, aEnd);
+        // 没找到重叠时直接接在后面
+        lower.top = Math.min(header + Math.max(overlap, 0), lower.bottom);
+        Log.d(TAG, "衔接: 顶部固定 " + header + ", 底部固定 " + footer + ", 重叠 " + overlap);
+    }
+
+    /**
+     * 找上一张滚动区域末尾和下一张滚动区域开头最长的重叠行数，没有时返回-1
+     */
+    private static int findOverlap(long[] a, int aStart, int aEnd, long[] b, int bStart, int bEnd) {
+        int maxLength = Math.min(aEnd - aStart, bEnd - bStart);
+        for (int length = maxLength; length >= MIN_OVERLAP_ROWS; length--) {
+            int allowed = length * MAX_MISMATCH_PERCENT / 100;
+            int mismatches = 0;
+            int distinct = 0;
+            int offset = aEnd - length;
+            boolean matched = true;
+            for (int i = 0; i < length; i++) {
+                if (a[offset + i] != b[bStart + i] && ++mismatches > allowed) {
+                    matched = false;
+                    break;
+                }
+                if (i > 0 && b[bStart + i] != b[bStart + i - 1]) {
+                    distinct++;
+                }
+            }
+            if (matched && distinct >= MIN_DISTINCT_ROWS) {
+                return length;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 按条带解码整张图，计算每一行的签名
+     */
+    private static long[] rowSignatures(BitmapRegionDecoder decoder) throws IOException {
+        int width = decoder.getWidth();
+        int height = decoder.getHeight();
+        long[] signatures = new long[height];
+        int[] row = new int[width];
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap band = null;
+        for (int top = 0; top < height; top += BAND_HEIGHT) {
+            int bottom = Math.min(height, top + BAND_HEIGHT);
+            // 条带大小相同时复用位图
+            options.inBitmap = band != null && bottom - top == BAND_HEIGHT ? band : null;
+            Bitmap decoded = decoder.decodeRegion(new Rect(0, top, width, bottom), options);
+            if (decoded == null) {
+                throw new IOException("decodeRegion failed at row " + top);
+            }
+            if (decoded != band && band != null) {
+                band.recycle();
+            }
+            band = decoded;
+            for (int y = top; y < bottom; y++) {
+                band.getPixels(row, 0, width, 0, y - top, width, 1);
+                signatures[y] = signature(row, width);
+            }
+        }
+        if (band != null) {
+            band.recycle();
+        }
+        return signatures;
+    }
+
+    /**
+     * 行签名：分段平均亮度（保留6位）的FNV-1a哈希
+     */
+    private static long signature(int[] row, int width) {
+        long hash = 0xcbf29ce484222325L;
+        int bucketWidth = Math.max(1, width / SIGNATURE_BUCKETS);
+        for (int bucket = 0; bucket < SIGNATURE_BUCKETS - 1; bucket++) {
+            int start = bucket * bucketWidth;
+            int end = Math.min(width, start + bucketWidth);
+            int sum = 0;
+            for (int x = start; x < end; x++) {
+                int color = row[x];
+                sum += ((color >> 16) & 0xFF) * 299 + ((color >> 8) & 0xFF) * 587 + (color & 0xFF) * 114;
+            }
+            int average = end > start ? sum / ((end - start) * 1000) : 0;
+            hash ^= average >> 2;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * 按条带解码一张图的 [top, bottom) 行并写出
+     */
+    private static void writeSegment(Segment segment, int width, StreamingPngWriter png) throws IOException {
+        if (segment.bottom <= segment.top) {
+            return;
+        }
+        BitmapRegionDecoder decoder = newDecoder(segment.photo);
+        int[] row = new int[width];
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap band = null;
+        try {
+            for (int top = segment.top; top < segment.bottom; top += BAND_HEIGHT) {
+                int bottom = Math.min(segment.bottom, top + BAND_HEIGHT);
+                options.inBitmap = band != null && bottom - top == BAND_HEIGHT ? band : null;
+                Bitmap decoded = decoder.decodeRegion(new Rect(0, top, width, bottom), options);
+                if (decoded == null) {
+                    throw new IOException("decodeRegion failed: " + segment.photo.getPath());
+                }
+                if (decoded != band && band != null) {
+                    band.recycle();
+                }
+                band = decoded;
+                for (int y = 0; y < bottom - top; y++) {
+                    band.getPixels(row, 0, width, 0, y, width, 1);
+                    png.writeRow(row);
+                }
+            }
+        } finally {
+            if (band != null) {
+                band.recycle();
+            }
+            decoder.recycle();
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static BitmapRegionDecoder newDecoder(Photo photo) throws IOException {
+        return BitmapRegionDecoder.newInstance(photo.getPath(), false);
+    }
+}
@@ -5,17 +5,22 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Bundle;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.widget.Toast;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class MainActivity extends AppCompatActivity {
     private static final int PERMISSION_REQUEST_CODE = 100;
@@ -25,6 +30,11 @@ public class MainActivity extends AppCompatActivity {
     private PhotoManager photoManager;
     private IconManager iconManager;
     private ActivityResultLauncher<Intent> galleryLauncher;
+    private BulkMediaMutator bulkMediaMutator;
+    private int loadGeneration = 0; // 丢弃过期的加载结果
+    // 上次与MediaStore同步时的媒体库版本号和最大DATE_ADDED，之后只查询这之后的变化
+    private volatile long syncGeneration = -1;
+    private volatile long syncDateAdded = 0;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -42,17 +52,134 @@ public class MainActivity extends AppCompatActivity {
                 }
         );
 
+        // 上次被中断的删除操作，用户确认后完成删除
+        bulkMediaMutator = new BulkMediaMutator(this);
+
         recyclerViewFolders = findViewById(R.id.recyclerViewFolders);
         recyclerViewFolders.setLayoutManager(new LinearLayoutManager(this));
+        recyclerViewFolders.addOnScrollListener(new AppExecutors.PauseOnScrollListener());
 
         photoManager = new PhotoManager(this);
         iconManager = new IconManager(this);
 
+        // 有权限时由onResume加载，避免重复查询
         if (checkPermissions()) {
-            loadFolders();
+            MediaIndexJobService.schedule(this);
         } else {
             requestPermissions();
         }
+
+        recoverPendingDeletes();
+    }
+
+    /**
+     * 恢复上次进程被杀时未完成的删除操作
+     */
+    private void recoverPendingDeletes() {
+        AppExecutors.getInstance().execute(AppExecutors.LANE_BACKGROUND, () -> {
+            List<PendingDeleteManager.PendingDelete> leftovers = PendingDeleteManager.recover(this);
+            if (leftovers.isEmpty()) {
+                PendingDeleteManager.discardJournal(this);
+                return;
+            }
+            runOnUiThread(() -> {
+                if (isFinishing() || isDestroyed()) {
+                    return;
+                }
+                new AlertDialog.Builder(this)
+                    .setTitle("未完成的删除")
+                    .setMessage("上次退出前有 " + leftovers.size() + " 个文件等待删除，是否现在删除？")
+                    .setPositiveButton("删除", (dialog, which) -> finishRecoveredDeletes(leftovers))
+                    .setNegativeButton("保留", (dialog, which) -> PendingDeleteManager.discardJournal(this))
+                    .setCancelable(false)
+                    .show();
+            });
+        });
+    }
+
+    private void finishRecoveredDeletes(List<PendingDeleteManager.PendingDelete> leftovers) {
+        List<Photo> photosToDelete = new ArrayList<>();
+        for (PendingDeleteManager.PendingDelete pending : leftovers) {
+            photosToDelete.add(pending.getPhoto());
+        }
+
+        bulkMediaMutator.trash(photosToDelete, result -> {
+            PendingDeleteManager.discardJournal(this);
+            if (!result.getSucceededIds().isEmpty()) {
+                if (BulkMediaMutator.isTrashSupported()) {
+                    // 只记录确实移到回收站的，失败和取消的不记录
+                    TrashStore.getInstance(this).addAll(result.filterSucceeded(photosToDelete));
+                }
+                Toast.makeText(this, "删除完成", Toast.LENGTH_SHORT).show();
+                loadFolders();
+            }
+        });
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_main, menu);
+        // 只有Android 11+才有系统回收站
+        menu.findItem(R.id.action_recently_deleted).setVisible(BulkMediaMutator.isTrashSupported());
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == R.id.action_recently_deleted) {
+            showRecentlyDeletedDialog();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * 从系统回收站恢复本应用删除的文件（跨会话撤销）
+     */
+    private void showRecentlyDeletedDialog() {
+        AppExecutors.getInstance().execute(AppExecutors.LANE_FOREGROUND, () -> {
+            List<Photo> trashed = TrashStore.getInstance(this).getTrashed();
+            runOnUiThread(() -> {
+                if (isFinishing() || isDestroyed()) {
+                    return;
+                }
+                if (trashed.isEmpty()) {
+                    Toast.makeText(this, "没有最近删除的文件", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                new AlertDialog.Builder(this)
+                    .setTitle("最近删除")
+                    .setMessage("回收站中有 " + trashed.size() + " 个本应用删除的文件，是否全部恢复？")
+                    .setPositiveButton("恢复", (dialog, which) -> restoreFromTrash(trashed))
+                    .setNegativeButton("取消", null)
+                    .show();
+            });
+        });
+    }
+
+    private void restoreFromTrash(List<Photo> trashed) {
+        bulkMediaMutator.untrash(trashed, result -> {
+            if (result.isCancelled() && result.getSucceededIds().isEmpty()) {
+                return;
+            }
+            List<Long> restoredIds = result.getSucceededIds();
+            TrashStore.getInstance(this).removeAll(restoredIds);
+            Toast.makeText(this, "已恢复 " + restoredIds.size() + " 个文件", Toast.LENGTH_SHORT).show();
+            // 恢复的文件放回目录和索引后再刷新文件夹列表
+            AppExecutors.getInstance().execute(AppExecutors.LANE_FOREGROUND, () -> {
+                List<Photo> restored = photoManager.getPhotosByIds(restoredIds);
+                MediaCatalog.getInstance(this).putAll(restored);
+                MediaIndex index = MediaIndex.getInstance(this);
+                for (Photo photo : restored) {
+                    index.put(photo, photoManager.getDisplayEpochDay(photo));
+                }
+                runOnUiThread(() -> {
+                    if (!isFinishing() && !isDestroyed()) {
+                        loadFolders();
+                    }
+                });
+            });
+        });
     }
 
     private boolean checkPermissions() {
@@ -86,6 +213,7 @@ public class MainActivity extends AppCompatActivity {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
         if (requestCode == PERMISSION_REQUEST_CODE) {
             if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+                MediaIndexJobService.schedule(this);
                 loadFolders();
             } else {
                 Toast.makeText(this, "需要存储权限才能查看照片", Toast.LENGTH_LONG).show();
@@ -94,38 +222,130 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void loadFolders() {
-        folders = new ArrayList<>();
+        // 查询MediaStore放到前台通道，避免阻塞主线程
+        final int generation = ++loadGeneration;
+        final boolean firstLoad = folders == null;
+        AppExecutors.getInstance().execute(AppExecutors.LANE_FOREGROUND, () -> {
+            MediaIndex index = MediaIndex.getInstance(this);
+            if (firstLoad) {
+                // 首次加载先用后台任务维护的媒体目录显示，完整查询完成后再校正
+                if (!index.isLoaded()) {
+                    List<Photo> cached = MediaCatalog.getInstance(this).getPhotos();
+                    if (!cached.isEmpty()) {
+                        index.rebuild(cached, photoManager);
+                    }
+                }
+                if (index.isLoaded()) {
+                    List<Folder> warm = buildFolders();
+                    runOnUiThread(() -> {
+                        if (generation != loadGeneration || folders != null || isFinishing() || isDestroyed()) {
+                            return;
+                        }
+                        showFolders(warm);
+                    });
+                }
 
-        // 获取所有图片
-        List<Photo> allPhotos = photoManager.getAllPhotos();
+                // 先取版本号，查询期间的变化下次还会查到
+                long mediaGeneration = photoManager.getGeneration();
+                List<Photo> allPhotos = photoManager.getAllPhotos();
+                MediaCatalog.getInstance(this).replaceAll(allPhotos);
+                index.rebuild(allPhotos, photoManager);
+                syncGeneration = mediaGeneration;
+                syncDateAdded = allPhotos.isEmpty() ? 0 : allPhotos.get(0).getDateAdded();
+                // 相似图片的哈希在最低优先级通道补齐
+                AppExecutors.getInstance().execute(AppExecutors.LANE_BACKGROUND,
+                        () -> ImageHashStore.getInstance(this).indexAll(allPhotos));
+            } else {
+                // 之后索引由推迟、删除和后台任务增量维护，这里只补上其他来源的变化
+                reconcileChanges();
+            }
 
-        // 添加"所有图片"文件夹
-        Folder allPhotosFolder = new Folder("all_photos", "所有图片");
-        for (Photo photo : allPhotos) {
-            allPhotosFolder.addPhoto(photo);
-        }
-        folders.add(allPhotosFolder);
+            List<Folder> result = buildFolders();
+            runOnUiThread(() -> {
+                if (generation != loadGeneration || isFinishing() || isDestroyed()) {
+                    return;
+                }
+                showFolders(result);
+            });
+        });
+    }
 
-        // 使用PhotoManager的新方法：根据DATE_ADDED+3天自动分组
-        java.util.Map<String, List<Photo>> photosByDate = photoManager.getPhotosByDisplayDate();
+    /**
+     * 查询上次同步之后的变化（从回收站恢复的、拼接生成的、界面打开期间新截的图、其他应用删除的等），增量更新目录和索引
+     * 内容触发的后台任务要等一段时间才执行，回到界面时不能依赖它
+     */
+    private void reconcileChanges() {
+        long mediaGeneration = photoManager.getGeneration();
+        List<Long> changedIds = photoManager.getChangedIdsSince(syncGeneration, syncDateAdded);
+        syncGeneration = mediaGeneration;
 
-        // 获取所有日期并排序（升序：最近的日期在前）
-        List<String> sortedDates = new ArrayList<>(photosByDate.keySet());
-        java.util.Collections.sort(sortedDates); // yyyy-MM-dd 格式可以直接字符串排序
+        MediaCatalog catalog = MediaCatalog.getInstance(this);
+        MediaIndex index = MediaIndex.getInstance(this);
 
-        // 按照排序后的日期顺序添加文件夹
-        for (String date : sortedDates) {
-            List<Photo> photos = photosByDate.get(date);
+        // 在后台时被其他应用删除的：版本号和添加时间都查不到，和当前仍存在的ID比较
+        // 先取目录再查询，查询期间新加入目录的不会被误判为已删除
+        List<Photo> known = catalog.getPhotos();
+        Set<Long> visibleIds = photoManager.getVisibleIds();
+        List<Long> deletedIds = new ArrayList<>();
+        for (Photo photo : known) {
+            if (!visibleIds.contains(photo.getId())) {
+                deletedIds.add(photo.getId());
+            }
+        }
+        BulkMediaMutator.forgetRemoved(this, deletedIds);
 
-            if (photos != null && !photos.isEmpty()) {
-                Folder folder = new Folder(date, date);
-                folder.setDateFolder(true);
-                for (Photo photo : photos) {
-                    folder.addPhoto(photo);
-                }
-                folders.add(folder);
+        if (changedIds.isEmpty()) {
+            return;
+        }
+
+        List<Photo> found = photoManager.getPhotosByIds(changedIds);
+        Set<Long> foundIds = new HashSet<>();
+        long maxDateAdded = syncDateAdded;
+        for (Photo photo : found) {
+            foundIds.add(photo.getId());
+            maxDateAdded = Math.max(maxDateAdded, photo.getDateAdded());
+            index.put(photo, photoManager.getDisplayEpochDay(photo));
+        }
+        catalog.putAll(found);
+        syncDateAdded = maxDateAdded;
+
+        // 查不到的：移到回收站、未写完或不在目标目录中，只处理目录中有的
+        List<Long> removedIds = new ArrayList<>();
+        for (long id : changedIds) {
+            if (!foundIds.contains(id) && catalog.getPhoto(id) != null) {
+                removedIds.add(id);
             }
         }
+        BulkMediaMutator.forgetRemoved(this, removedIds);
+        if (!found.isEmpty()) {
+            AppExecutors.getInstance().execute(AppExecutors.LANE_BACKGROUND,
+                    () -> ImageHashStore.getInstance(this).indexAll(found));
+        }
+    }
+
+    /**
+     * 用索引中的汇总生成文件夹列表，不复制媒体列表
+     */
+    private List<Folder> buildFolders() {
+        MediaIndex index = MediaIndex.getInstance(this);
+        List<Folder> result = new ArrayList<>();
+
+        // 添加"所有图片"文件夹
+        result.add(new Folder("all_photos", "所有图片", index.getAllSummary()));
+
+        // 按日期升序添加日期文件夹（最近的日期在前）
+        for (DaySummary summary : index.getDaySummaries()) {
+            String date = PhotoManager.formatEpochDay(summary.getEpochDay());
+            Folder folder = new Folder(date, date, summary);
+            folder.setDateFolder(true);
+            result.add(folder);
+        }
+
+        return result;
+    }
+
+    private void showFolders(List<Folder> result) {
+        folders = result;
 
         folderAdapter = new FolderAdapter(this, folders, folder -> {
             Intent intent = new Intent(MainActivity.this, GalleryActivity.class);
@@ -137,8 +357,8 @@ public class MainActivity extends AppCompatActivity {
 
         recyclerViewFolders.setAdapter(folderAdapter);
 
-        // 更新应用图标（根据日期文件夹状态）
-        iconManager.updateAppIcon();
+        // 更新应用图标（根据日期文件夹状态），跨过午夜时状态可能变化，索引只需一次比较
+        AppExecutors.getInstance().execute(AppExecutors.LANE_BACKGROUND, () -> iconManager.updateAppIcon());
     }
 
     @Override
@@ -0,0 +1,146 @@
+package com.example.photogallery;
+
+import android.content.Context;
+import android.util.Log;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * 持久化的媒体目录（上次查询到的目标目录中的全部媒体）
+ * 启动时先用它显示文件夹，完整查询在后台进行；应用关闭时由 MediaIndexJobService 增量更新
+ * 读写文件都在调用线程进行，不要在主线程调用
+ */
+public class MediaCatalog {
+    private static final String TAG = "MediaCatalog";
+    private static final String CATALOG_FILE = "media_catalog.json";
+
+    private static MediaCatalog instance;
+
+    private final File catalogFile;
+    private final Gson gson = new Gson();
+    // 媒体ID -> 媒体，按DATE_ADDED倒序；null表示还没有从文件读入
+    private LinkedHashMap<Long, Photo> photos;
+
+    private MediaCatalog(Context context) {
+        catalogFile = new File(context.getApplicationContext().getFilesDir(), CATALOG_FILE);
+    }
+
+    public static synchronized MediaCatalog getInstance(Context context) {
+        if (instance == null) {
+            instance = new MediaCatalog(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 获取目录中的全部媒体（按DATE_ADDED倒序），没有目录时返回空列表
+     */
+    public synchronized List<Photo> getPhotos() {
+        ensureLoaded();
+        return new ArrayList<>(photos.values());
+    }
+
+    public synchronized Photo getPhoto(long mediaId) {
+        ensureLoaded();
+        return photos.get(mediaId);
+    }
+
+    /**
+     * 用完整查询的结果替换目录
+     */
+    public synchronized void replaceAll(List<Photo> allPhotos) {
+        photos = new LinkedHashMap<>();
+        for (Photo photo : allPhotos) {
+            photos.put(photo.getId(), photo);
+        }
+        save();
+    }
+
+    /**
+     * 新增或更新媒体
+     */
+    public synchronized void putAll(List<Photo> changed) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        ensureLoaded();
+        for (Photo photo : changed) {
+            photos.put(photo.getId(), photo);
+        }
+        sortByDateAdded();
+        save();
+    }
+
+    /**
+     * 移除已删除的媒体
+     */
+    public synchronized void removeAll(List<Long> mediaIds) {
+        ensureLoaded();
+        boolean changed = false;
+        for (long mediaId : mediaIds) {
+            changed |= photos.remove(mediaId) != null;
+        }
+        if (changed) {
+            save();
+        }
+    }
+
+    private void sortByDateAdded() {
+        List<Photo> sorted = new ArrayList<>(photos.values());
+        sorted.sort((p1, p2) -> Long.compare(p2.getDateAdded(), p1.getDateAdded()));
+        photos.clear();
+        for (Photo photo : sorted) {
+            photos.put(photo.getId(), photo);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (photos != null) {
+            return;
+        }
+        photos = new LinkedHashMap<>();
+        if (!catalogFile.exists()) {
+            return;
+        }
+        try (Reader reader = new InputStreamReader(new FileInputStream(catalogFile), StandardCharsets.UTF_8)) {
+            List<Photo> saved = gson.fromJson(reader, new TypeToken<List<Photo>>() {}.getType());
+            if (saved != null) {
+                for (Photo photo : saved) {
+                    // Uri没有序列化，按ID重新生成
+                    photo.setUri(BulkMediaMutator.getContentUri(photo));
+                    photos.put(photo.getId(), photo);
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "读取媒体目录失败", e);
+        }
+    }
+
+    /**
+     * 写入目录文件（先写临时文件再重命名，避免写到一半被杀导致文件损坏）
+     */
+    private void save() {
+        File tempFile = new File(catalogFile.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
+            gson.toJson(new ArrayList<>(photos.values()), writer);
+        } catch (IOException e) {
+            Log.e(TAG, "写入媒体目录失败", e);
+            return;
+        }
+        if (!tempFile.renameTo(catalogFile)) {
+            Log.e(TAG, "替换媒体目录失败");
+        }
+    }
+}
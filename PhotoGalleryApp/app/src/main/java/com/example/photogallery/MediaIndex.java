@@ -0,0 +1,281 @@
+package com.example.photogallery;
+
+import android.content.Context;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * 媒体索引（媒体ID -> 显示日期），按显示日期维护每天的汇总（数量、总大小、封面）
+ * 推迟、删除、新增时增量更新，"所有日期文件夹都在今天之后"只需比较最小显示日期，
+ * 文件夹列表直接使用汇总（见 DaySummary）
+ * 每次变化后把每天的数量写入小部件用的汇总（见 CompletedDateWidget），
+ * 完成状态翻转时通知 IconManager，到期数量变化时刷新小部件
+ */
+public class MediaIndex {
+    private static final String TAG = "MediaIndex";
+    static final String AGGREGATE_PREFS = "WidgetAggregate";
+    static final String KEY_DAY_COUNTS = "day_counts";
+
+    private static MediaIndex instance;
+
+    private final Context context;
+    // 媒体ID -> 媒体 / 显示日期（epoch-day）
+    private final Map<Long, Photo> photoById = new HashMap<>();
+    private final Map<Long, Long> dayById = new HashMap<>();
+    // 显示日期 -> 当天的汇总，firstKey()即最小显示日期
+    private final TreeMap<Long, DaySummary> summaryByDay = new TreeMap<>();
+    private DaySummary allSummary = new DaySummary(DaySummary.ALL_DAYS);
+    // 封面被移除、需要重新选择封面的汇总，在一次修改结束时统一处理
+    private final Set<DaySummary> staleCovers = new HashSet<>();
+    private boolean loaded = false;
+    // 上次通知时的完成状态
+    private Boolean lastCompleted = null;
+    // 上次写入的汇总，以及其中今天及之前的部分
+    private String lastAggregate = null;
+    private String lastOverdue = null;
+
+    private MediaIndex(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static synchronized MediaIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new MediaIndex(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 用完整的媒体列表重建索引（一次遍历同时生成每天的汇总）
+     */
+    public void rebuild(List<Photo> photos, PhotoManager photoManager) {
+        synchronized (this) {
+            photoById.clear();
+            dayById.clear();
+            summaryByDay.clear();
+            staleCovers.clear();
+            allSummary = new DaySummary(DaySummary.ALL_DAYS);
+            for (Photo photo : photos) {
+                addLocked(photo, photoManager.getDisplayEpochDay(photo));
+            }
+            loaded = true;
+        }
+        publish();
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * 新增媒体或修改显示日期（推迟、撤销推迟）
+     */
+    public void put(Photo photo, long epochDay) {
+        synchronized (this) {
+            if (!loaded) {
+                return;
+            }
+            removeLocked(photo.getId());
+            addLocked(photo, epochDay);
+            refreshStaleCoversLocked();
+        }
+        publish();
+    }
+
+    /**
+     * 批量修改显示日期（批量推迟）
+     */
+    public void putAll(List<Photo> photos, long epochDay) {
+        synchronized (this) {
+            if (!loaded) {
+                return;
+            }
+            for (Photo photo : photos) {
+                removeLocked(photo.getId());
+                addLocked(photo, epochDay);
+            }
+            refreshStaleCoversLocked();
+        }
+        publish();
+    }
+
+    /**
+     * 移除已删除的媒体
+     */
+    public void removeAll(List<Long> mediaIds) {
+        synchronized (this) {
+            if (!loaded) {
+                return;
+            }
+            for (long mediaId : mediaIds) {
+                removeLocked(mediaId);
+            }
+            refreshStaleCoversLocked();
+        }
+        publish();
+    }
+
+    /**
+     * 每天的汇总（副本），按日期升序
+     */
+    public synchronized List<DaySummary> getDaySummaries() {
+        List<DaySummary> summaries = new ArrayList<>(summaryByDay.size());
+        for (DaySummary summary : summaryByDay.values()) {
+            summaries.add(new DaySummary(summary));
+        }
+        return summaries;
+    }
+
+    /**
+     * 全部媒体的汇总（副本）
+     */
+    public synchronized DaySummary getAllSummary() {
+        return new DaySummary(allSummary);
+    }
+
+    /**
+     * 最小显示日期，没有媒体时返回Long.MAX_VALUE
+     */
+    public synchronized long getMinDisplayDay() {
+        return summaryByDay.isEmpty() ? Long.MAX_VALUE : summaryByDay.firstKey();
+    }
+
+    /**
+     * 是否所有日期文件夹都在指定日期之后（没有日期文件夹也算）
+     */
+    public boolean isAllAfter(long epochDay) {
+        return getMinDisplayDay() > epochDay;
+    }
+
+    private void addLocked(Photo photo, long epochDay) {
+        photoById.put(photo.getId(), photo);
+        dayById.put(photo.getId(), epochDay);
+        DaySummary summary = summaryByDay.get(epochDay);
+        if (summary == null) {
+            summary = new DaySummary(epochDay);
+            summaryByDay.put(epochDay, summary);
+        }
+        summary.add(photo);
+        allSummary.add(photo);
+    }
+
+    private void removeLocked(long mediaId) {
+        Photo photo = photoById.remove(mediaId);
+        Long day = dayById.remove(mediaId);
+        if (photo == null || day == null) {
+            return;
+        }
+        DaySummary summary = summaryByDay.get(day);
+        if (summary != null) {
+            if (summary.remove(photo)) {
+                staleCovers.add(summary);
+            }
+            if (summary.getCount() <= 0) {
+                summaryByDay.remove(day);
+                staleCovers.remove(summary);
+            }
+        }
+        if (allSummary.remove(photo)) {
+            staleCovers.add(allSummary);
+        }
+    }
+
+    /**
+     * 为封面被移除的汇总重新选择封面，整批修改只遍历一次
+     */
+    private void refreshStaleCoversLocked() {
+        if (staleCovers.isEmpty()) {
+            return;
+        }
+        boolean refreshAll = staleCovers.contains(allSummary);
+        for (Map.Entry<Long, Photo> entry : photoById.entrySet()) {
+            Photo photo = entry.getValue();
+            if (refreshAll) {
+                allSummary.offerCover(photo);
+            }
+            DaySummary summary = summaryByDay.get(dayById.get(entry.getKey()));
+            if (summary != null && staleCovers.contains(summary)) {
+                summary.offerCover(photo);
+            }
+        }
+        staleCovers.clear();
+    }
+
+    /**
+     * 写入小部件汇总；完成状态翻转时更新图标，到期数量变化时刷新小部件
+     */
+    private void publish() {
+        long today = PhotoManager.getTodayEpochDay();
+        boolean completed = isAllAfter(today);
+        String aggregate;
+        boolean flipped;
+        boolean overdueChanged;
+        synchronized (this) {
+            aggregate = encodeDayCounts(summaryByDay);
+            if (aggregate.equals(lastAggregate) && lastCompleted != null && lastCompleted == completed) {
+                return;
+            }
+            String overdue = encodeDayCounts(summaryByDay.headMap(today, true));
+            flipped = lastCompleted == null || lastCompleted != completed;
+            overdueChanged = !overdue.equals(lastOverdue);
+            lastCompleted = completed;
+            lastAggregate = aggregate;
+            lastOverdue = overdue;
+        }
+
+        context.getSharedPreferences(AGGREGATE_PREFS, Context.MODE_PRIVATE)
+                .edit().putString(KEY_DAY_COUNTS, aggregate).apply();
+
+        if (flipped) {
+            Log.d(TAG, "完成状态变化: " + completed);
+            new IconManager(context).updateAppIcon();
+        }
+        if (overdueChanged) {
+            // 小部件只读汇总，不查询媒体库；只有今天及之前的数量变化才需要重绘
+            CompletedDateWidget.updateAllWidgets(context);
+        }
+    }
+
+    /**
+     * 编码为 "epochDay:count,epochDay:count"，按日期升序
+     */
+    static String encodeDayCounts(SortedMap<Long, DaySummary> summaries) {
+        StringBuilder sb = new StringBuilder();
+        for (DaySummary summary : summaries.values()) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(summary.getEpochDay()).append(':').append(summary.getCount());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 解码汇总，无效的项忽略
+     */
+    static TreeMap<Long, Integer> decodeDayCounts(String encoded) {
+        TreeMap<Long, Integer> counts = new TreeMap<>();
+        if (encoded == null || encoded.isEmpty()) {
+            return counts;
+        }
+        for (String item : encoded.split(",")) {
+            int colon = item.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            try {
+                counts.put(Long.parseLong(item.substring(0, colon)), Integer.parseInt(item.substring(colon + 1)));
+            } catch (NumberFormatException e) {
+                // 忽略无效的项
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.photogallery;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.net.Uri;
+import android.os.PersistableBundle;
+import android.provider.MediaStore;
+import android.util.Log;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.request.FutureTarget;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 应用关闭时在后台索引新增的截图
+ * 媒体库变化时由 JobScheduler 触发（多次变化合并为一次），增量更新 MediaCatalog 和 MediaIndex
+ * （进而更新小部件汇总）；新文件的缩略图预热放到充电或空闲时的另一个任务中
+ */
+public class MediaIndexJobService extends JobService {
+    private static final String TAG = "MediaIndexJobService";
+    private static final int JOB_ID_CONTENT = 1001;
+    private static final int JOB_ID_THUMBNAILS = 1002;
+    private static final int JOB_ID_SWEEP = 1003;
+    private static final String EXTRA_MEDIA_IDS = "media_ids";
+
+    // 最后一次变化后等这么久再执行，连续截图合并为一次
+    private static final long TRIGGER_UPDATE_DELAY_MS = 10 * 1000;
+    // 持续变化时最多推迟这么久
+    private static final long TRIGGER_MAX_DELAY_MS = 2 * 60 * 1000;
+    // 孤立文件清理的周期
+    private static final long SWEEP_INTERVAL_MS = 24 * 60 * 60 * 1000;
+
+    // 被系统中止的任务ID；三个任务可能同时运行，各自判断
+    private final Set<Integer> stoppedJobIds = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    /**
+     * 注册媒体库变化触发器（触发一次后需要重新注册）
+     */
+    public static void schedule(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null) {
+            return;
+        }
+        scheduleSweep(context, scheduler);
+        if (scheduler.getPendingJob(JOB_ID_CONTENT) != null) {
+            return;
+        }
+
+        JobInfo job = new JobInfo.Builder(JOB_ID_CONTENT, new ComponentName(context, MediaIndexJobService.class))
+                .addTriggerContentUri(new JobInfo.TriggerContentUri(
+                        MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                        JobInfo.TriggerContentUri.FLAG_NOTIFY_FOR_DESCENDANTS))
+                .addTriggerContentUri(new JobInfo.TriggerContentUri(
+                        MediaStore.Video.Media.EXTERNAL_CONTENT_URI,
+                        JobInfo.TriggerContentUri.FLAG_NOTIFY_FOR_DESCENDANTS))
+                .setTriggerContentUpdateDelay(TRIGGER_UPDATE_DELAY_MS)
+                .setTriggerContentMaxDelay(TRIGGER_MAX_DELAY_MS)
+                .build();
+        scheduler.schedule(job);
+    }
+
+    /**
+     * 每天在充电且空闲时清理一次孤立文件（见 OrphanSweeper）
+     */
+    private static void scheduleSweep(Context context, JobScheduler scheduler) {
+        if (scheduler.getPendingJob(JOB_ID_SWEEP) != null) {
+            return;
+        }
+        JobInfo job = new JobInfo.Builder(JOB_ID_SWEEP, new ComponentName(context, MediaIndexJobService.class))
+                .setRequiresCharging(true)
+                .setRequiresDeviceIdle(true)
+                .setPeriodic(SWEEP_INTERVAL_MS)
+                .build();
+        scheduler.schedule(job);
+    }
+
+    /**
+     * 安排缩略图预热，只在充电且空闲时执行
+     */
+    private static void scheduleThumbnails(Context context, List<Long> mediaIds) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null || mediaIds.isEmpty()) {
+            return;
+        }
+
+        // 合并还没执行的预热任务
+        Set<Long> ids = new HashSet<>(mediaIds);
+        JobInfo pending = scheduler.getPendingJob(JOB_ID_THUMBNAILS);
+        if (pending != null) {
+            long[] pendingIds = pending.getExtras().getLongArray(EXTRA_MEDIA_IDS);
+            if (pendingIds != null) {
+                for (long id : pendingIds) {
+                    ids.add(id);
+                }
+            }
+        }
+
+        long[] idArray = new long[ids.size()];
+        int i = 0;
+        for (long id : ids) {
+            idArray[i++] = id;
+        }
+        PersistableBundle extras = new PersistableBundle();
+        extras.putLongArray(EXTRA_MEDIA_IDS, idArray);
+
+        JobInfo job = new JobInfo.Builder(JOB_ID_THUMBNAILS, new ComponentName(context, MediaIndexJobService.class))
+                .setRequiresCharging(true)
+                .setRequiresDeviceIdle(true)
+                .setExtras(extras)
+                .build();
+        scheduler.schedule(job);
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        stoppedJobIds.remove(params.getJobId());
+        if (params.getJobId() == JOB_ID_THUMBNAILS) {
+            AppExecutors.getInstance().execute(AppExecutors.LANE_BACKGROUND, () -> {
+                boolean finished = warmThumbnails(params.getExtras().getLongArray(EXTRA_MEDIA_IDS));
+                jobFinished(params, !finished);
+            });
+            return true;
+        }
+        if (params.getJobId() == JOB_ID_SWEEP) {
+            AppExecutors.getInstance().execute(AppExecutors.LANE_BACKGROUND, () -> {
+                try {
+                    new OrphanSweeper(this).sweep();
+                } catch (Exception e) {
+                    Log.e(TAG, "清理孤立文件失败", e);
+                }
+                jobFinished(params, false);
+            });
+            return true;
+        }
+
+        final Uri[] triggeredUris = params.getTriggeredContentUris();
+        AppExecutors.getInstance().execute(AppExecutors.LANE_BACKGROUND, () -> {
+            try {
+                indexChanges(triggeredUris);
+            } catch (Exception e) {
+                Log.e(TAG, "增量索引失败", e);
+            }
+            jobFinished(params, false);
+            // 内容触发器是一次性的，重新注册以接收下一次变化
+            schedule(this);
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        stoppedJobIds.add(params.getJobId());
+        // 预热被打断时重新安排；内容触发器在下次变化时会重新触发；清理是周期任务，下个周期再做
+        return params.getJobId() == JOB_ID_THUMBNAILS;
+    }
+
+    /**
+     * 按变化的Uri增量更新目录和索引
+     * 变化太多时系统不提供具体Uri，改为完整查询
+     */
+    private void indexChanges(Uri[] triggeredUris) {
+        PhotoManager photoManager = new PhotoManager(this);
+        MediaCatalog catalog = MediaCatalog.getInstance(this);
+        MediaIndex index = MediaIndex.getInstance(this);
+
+        List<Long> changedIds = new ArrayList<>();
+        if (triggeredUris != null) {
+            for (Uri uri : triggeredUris) {
+                try {
+                    changedIds.add(Long.parseLong(uri.getLastPathSegment()));
+                } catch (NumberFormatException | NullPointerException e) {
+                    // 集合本身的Uri，没有具体ID
+                    changedIds = null;
+                    break;
+                }
+            }
+        }
+
+        // 进程可能是为这个任务新启动的，索引要先从目录载入；目录是空的（还没有完整查询过）时
+        // 只用变化的几项建索引会写出错误的小部件和图标状态，也改为完整查询
+        List<Photo> cached = catalog.getPhotos();
+        if (changedIds == null || triggeredUris == null || cached.isEmpty()) {
+            Log.d(TAG, changedIds != null && triggeredUris != null ? "没有媒体目录，完整重建索引" : "变化过多，完整重建索引");
+            List<Photo> allPhotos = photoManager.getAllPhotos();
+            Set<Long> knownIds = new HashSet<>();
+            for (Photo photo : cached) {
+                knownIds.add(photo.getId());
+            }
+            catalog.replaceAll(allPhotos);
+            index.rebuild(allPhotos, photoManager);
+
+            List<Long> newIds = new ArrayList<>();
+            for (Photo photo : allPhotos) {
+                if (!knownIds.contains(photo.getId())) {
+                    newIds.add(photo.getId());
+                }
+            }
+            scheduleThumbnails(this, newIds);
+            return;
+        }
+
+        if (!index.isLoaded()) {
+            index.rebuild(cached, photoManager);
+        }
+
+        List<Photo> found = photoManager.getPhotosByIds(changedIds);
+        Set<Long> foundIds = new HashSet<>();
+        List<Long> newIds = new ArrayList<>();
+        for (Photo photo : found) {
+            foundIds.add(photo.getId());
+            if (catalog.getPhoto(photo.getId()) == null) {
+                newIds.add(photo.getId());
+            }
+            index.put(photo, photoManager.getDisplayEpochDay(photo));
+        }
+        catalog.putAll(found);
+
+        // 查不到的：已删除、移到回收站或不在目标目录中
+        List<Long> removedIds = new ArrayList<>();
+        for (long id : changedIds) {
+            if (!foundIds.contains(id)) {
+                removedIds.add(id);
+            }
+        }
+        catalog.removeAll(removedIds);
+        index.removeAll(removedIds);
+        VideoPosterCache.getInstance(this).removeAll(removedIds);
+        ImageHashStore.getInstance(this).removeAll(removedIds);
+
+        Log.d(TAG, "增量索引完成: 变化 " + changedIds.size() + ", 新增 " + newIds.size()
+                + ", 移除 " + removedIds.size());
+        scheduleThumbnails(this, newIds);
+    }
+
+    /**
+     * 把新文件的缩略图解码进Glide磁盘缓存
+     *
+     * @return 是否全部完成（被系统中止时返回false）
+     */
+    private boolean warmThumbnails(long[] mediaIds) {
+        if (mediaIds == null) {
+            return true;
+        }
+        MediaCatalog catalog = MediaCatalog.getInstance(this);
+        RequestManager glide = Glide.with(getApplicationContext());
+        // 预热当前网格密度使用的档位
+        int size = GridDensity.thumbnailSize(GridDensity.load(this));
+        for (long id : mediaIds) {
+            if (stoppedJobIds.contains(JOB_ID_THUMBNAILS)) {
+                return false;
+            }
+            Photo photo = catalog.getPhoto(id);
+            if (photo == null) {
+                continue;
+            }
+            // 先生成封面，网格里的缩略图从封面缩小；取不到帧的视频没有缩略图可预热
+            if (photo.isVideo() && VideoPosterCache.getInstance(this).ensurePoster(photo) == null) {
+                continue;
+            }
+            FutureTarget<?> target = PhotoAdapter.thumbnailRequest(this, glide, photo, size).submit();
+            try {
+                target.get();
+            } catch (Exception e) {
+                Log.w(TAG, "预热缩略图失败: " + id);
+            } finally {
+                glide.clear(target);
+            }
+        }
+        // 充电空闲时顺便计算新图片的哈希，"相似"视图打开时不用再算
+        List<Photo> warmed = new ArrayList<>();
+        for (long id : mediaIds) {
+            Photo photo = catalog.getPhoto(id);
+            if (photo != null) {
+                warmed.add(photo);
+            }
+        }
+        ImageHashStore.getInstance(this).indexAll(warmed);
+        Log.d(TAG, "缩略图预热完成: " + mediaIds.length);
+        return true;
+    }
+}
@@ -0,0 +1,329 @@
+package com.example.photogallery;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * 媒体修改任务队列
+ * 任务先写入日志文件再执行，进程被杀后下次启动时继续执行未完成的任务
+ * 日志的读写在一个串行的日志线程上进行，提交任务不在调用线程上做文件读写
+ * 同一个媒体的任务按提交顺序串行执行，不同媒体的任务并行执行（运行在 AppExecutors 的文件修改通道）
+ * 每个工作线程一次取出所有已就绪的任务，整批只写一次覆盖表
+ */
+public class MediaJobQueue {
+    private static final String TAG = "MediaJobQueue";
+    private static final String JOURNAL_FILE = "media_jobs.json";
+    private static final int WORKER_COUNT = 2;
+
+    private static MediaJobQueue instance;
+
+    public static class Job {
+        public static final int TYPE_SET_DISPLAY_DAY = 1;
+        public static final int TYPE_RESTORE_DISPLAY_DAY = 2;
+
+        private long seq;
+        private int type;
+        private long mediaId;
+        private long epochDay;
+
+        public Job(int type, long mediaId, long epochDay) {
+            this.type = type;
+            this.mediaId = mediaId;
+            this.epochDay = epochDay;
+        }
+
+        public static Job setDisplayDay(long mediaId, long epochDay) {
+            return new Job(TYPE_SET_DISPLAY_DAY, mediaId, epochDay);
+        }
+
+        public static Job restoreDisplayDay(long mediaId, long previousDay) {
+            return new Job(TYPE_RESTORE_DISPLAY_DAY, mediaId, previousDay);
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        public long getMediaId() {
+            return mediaId;
+        }
+
+        public long getEpochDay() {
+            return epochDay;
+        }
+    }
+
+    public interface ProgressListener {
+        void onProgress(int completed, int total);
+    }
+
+    private final Context context;
+    private final File journalFile;
+    private final DisplayDateStore displayDateStore;
+    private final Gson gson = new Gson();
+    private final Executor[] workers = new Executor[WORKER_COUNT];
+    // 每个工作线程已分配但还没取走的任务，以及是否已经安排了取任务
+    private final List<List<Job>> readyJobs = new ArrayList<>(WORKER_COUNT);
+    private final boolean[] drainScheduled = new boolean[WORKER_COUNT];
+    // 读写日志并把任务分配到工作线程，保证任务执行前日志已写入
+    private final Executor journalExecutor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<ProgressListener> listeners = new CopyOnWriteArrayList<>();
+
+    // 按序号保存未完成的任务（即日志内容），恢复的任务序号为负，排在新任务之前
+    private final TreeMap<Long, Job> pendingJobs = new TreeMap<>();
+    // 媒体ID -> 最后一个未完成任务，用于在任务执行前就能读到最新的显示日期
+    private final Map<Long, Job> latestJobByMedia = new HashMap<>();
+    private long nextSeq = 0;
+    private int completedCount = 0;
+    private int totalCount = 0;
+
+    private MediaJobQueue(Context context) {
+        this.context = context.getApplicationContext();
+        journalFile = new File(this.context.getFilesDir(), JOURNAL_FILE);
+        displayDateStore = DisplayDateStore.getInstance(this.context);
+        // 在文件修改通道上运行，每个串行执行器相当于一个有序的工作线程
+        for (int i = 0; i < WORKER_COUNT; i++) {
+            workers[i] = AppExecutors.getInstance().newSerialExecutor(AppExecutors.LANE_MUTATION);
+            readyJobs.add(new ArrayList<>());
+        }
+        journalExecutor = AppExecutors.getInstance().newSerialExecutor(AppExecutors.LANE_MUTATION);
+    }
+
+    public static synchronized MediaJobQueue getInstance(Context context) {
+        if (instance == null) {
+            instance = new MediaJobQueue(context);
+            // 第一个日志任务，之后提交的任务写日志前一定已经读过旧日志
+            instance.journalExecutor.execute(instance::resume);
+        }
+        return instance;
+    }
+
+    public void addProgressListener(ProgressListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeProgressListener(ProgressListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 提交任务：立即对 getPendingDisplayDay 可见，在日志线程上先写日志，再分配到工作线程
+     */
+    public void enqueue(List<Job> jobs) {
+        if (jobs.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            for (Job job : jobs) {
+                job.seq = nextSeq++;
+                pendingJobs.put(job.seq, job);
+                latestJobByMedia.put(job.mediaId, job);
+            }
+            totalCount += jobs.size();
+        }
+        journalExecutor.execute(() -> {
+            writeJournal();
+            submit(jobs);
+        });
+        notifyProgress();
+    }
+
+    /**
+     * 获取尚未执行完的任务将要写入的显示日期
+     *
+     * @return 没有未完成任务时返回null
+     */
+    public synchronized Long getPendingDisplayDay(long mediaId) {
+        Job job = latestJobByMedia.get(mediaId);
+        return job != null ? job.epochDay : null;
+    }
+
+    /**
+     * 恢复上次进程退出时未完成的任务（在日志线程上执行）
+     * 所有任务都是写入绝对值的幂等操作，按原顺序重新执行即可；恢复前已经提交的新任务还没有分配，
+     * 恢复的任务先分配，同一媒体仍然按时间顺序执行，新任务的显示日期优先
+     */
+    private void resume() {
+        List<Job> jobs = readJournal();
+        if (jobs.isEmpty()) {
+            return;
+        }
+        Log.d(TAG, "恢复未完成的任务: " + jobs.size());
+        synchronized (this) {
+            long seq = -jobs.size();
+            for (Job job : jobs) {
+                job.seq = seq++;
+                pendingJobs.put(job.seq, job);
+                latestJobByMedia.putIfAbsent(job.mediaId, job);
+            }
+            totalCount += jobs.size();
+        }
+        submit(jobs);
+        notifyProgress();
+        refreshIndex(jobs);
+    }
+
+    /**
+     * 索引可能在日志读完之前就按旧的显示日期建好了，按恢复的任务改过来
+     */
+    private void refreshIndex(List<Job> jobs) {
+        MediaIndex index = MediaIndex.getInstance(context);
+        if (!index.isLoaded()) {
+            return;
+        }
+        MediaCatalog catalog = MediaCatalog.getInstance(context);
+        PhotoManager photoManager = new PhotoManager(context);
+        for (Job job : jobs) {
+            Photo photo = catalog.getPhoto(job.mediaId);
+            if (photo != null) {
+                index.put(photo, photoManager.getDisplayEpochDay(photo));
+            }
+        }
+    }
+
+    private void submit(List<Job> jobs) {
+        boolean[] schedule = new boolean[WORKER_COUNT];
+        synchronized (this) {
+            for (Job job : jobs) {
+                // 同一媒体总是分配到同一个串行执行器，保证按提交顺序执行
+                int worker = (int) Math.floorMod(job.mediaId, (long) WORKER_COUNT);
+                readyJobs.get(worker).add(job);
+                if (!drainScheduled[worker]) {
+                    drainScheduled[worker] = true;
+                    schedule[worker] = true;
+                }
+            }
+        }
+        for (int i = 0; i < WORKER_COUNT; i++) {
+            if (schedule[i]) {
+                final int worker = i;
+                workers[worker].execute(() -> drain(worker));
+            }
+        }
+    }
+
+    /**
+     * 取出工作线程上所有已就绪的任务，按顺序合并后一次写入覆盖表
+     */
+    private void drain(int worker) {
+        List<Job> batch;
+        synchronized (this) {
+            batch = readyJobs.get(worker);
+            readyJobs.set(worker, new ArrayList<>());
+            drainScheduled[worker] = false;
+        }
+        // 同一媒体后面的任务覆盖前面的
+        Map<Long, Long> days = new LinkedHashMap<>();
+        for (Job job : batch) {
+            switch (job.type) {
+                case Job.TYPE_SET_DISPLAY_DAY:
+                case Job.TYPE_RESTORE_DISPLAY_DAY:
+                    days.put(job.mediaId, job.epochDay);
+                    break;
+                default:
+                    Log.w(TAG, "未知的任务类型: " + job.type);
+                    break;
+            }
+        }
+        try {
+            displayDateStore.setDisplayDays(days);
+        } catch (Exception e) {
+            Log.e(TAG, "任务执行失败: count=" + batch.size(), e);
+        }
+        onJobsFinished(batch);
+    }
+
+    private void onJobsFinished(List<Job> batch) {
+        synchronized (this) {
+            for (Job job : batch) {
+                pendingJobs.remove(job.seq);
+                if (latestJobByMedia.get(job.mediaId) == job) {
+                    latestJobByMedia.remove(job.mediaId);
+                }
+            }
+            completedCount += batch.size();
+        }
+        // 这批任务已经写入覆盖表，从日志中去掉（任务都是幂等的，崩溃后重放多余的任务也没有影响）
+        journalExecutor.execute(this::writeJournal);
+        notifyProgress();
+    }
+
+    private void notifyProgress() {
+        final int completed;
+        final int total;
+        synchronized (this) {
+            completed = completedCount;
+            total = totalCount;
+            if (completedCount == totalCount) {
+                completedCount = 0;
+                totalCount = 0;
+            }
+        }
+        mainHandler.post(() -> {
+            for (ProgressListener listener : listeners) {
+                listener.onProgress(completed, total);
+            }
+        });
+    }
+
+    private List<Job> readJournal() {
+        if (!journalFile.exists()) {
+            return new ArrayList<>();
+        }
+        try (Reader reader = new InputStreamReader(new FileInputStream(journalFile), StandardCharsets.UTF_8)) {
+            List<Job> jobs = gson.fromJson(reader, new TypeToken<List<Job>>() {}.getType());
+            return jobs != null ? jobs : new ArrayList<>();
+        } catch (Exception e) {
+            Log.e(TAG, "读取任务日志失败", e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * 写入当时未完成的任务（在日志线程上调用；先写临时文件再重命名，避免写到一半被杀导致日志损坏）
+     */
+    private void writeJournal() {
+        List<Job> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(pendingJobs.values());
+        }
+        if (snapshot.isEmpty()) {
+            if (journalFile.exists() && !journalFile.delete()) {
+                Log.w(TAG, "删除任务日志失败");
+            }
+            return;
+        }
+        File tempFile = new File(journalFile.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
+            gson.toJson(snapshot, writer);
+        } catch (IOException e) {
+            Log.e(TAG, "写入任务日志失败", e);
+            return;
+        }
+        if (!tempFile.renameTo(journalFile)) {
+            Log.e(TAG, "替换任务日志失败");
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.example.photogallery;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.provider.MediaStore;
+import android.util.Log;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 清理旧版"复制后删除原文件"的推迟方式留下的垃圾（在充电空闲时由 MediaIndexJobService 调用）
+ * 1. 复制中途被杀留下的 IS_PENDING 行（只处理本应用创建的）
+ * 2. 原文件删除被取消或失败后留下的副本（Android 10+）：先按文件名规则和大小找到对应的原文件，
+ *    只有这样的候选才计算内容校验值，校验值相同才算副本
+ * 两类文件合并后按集合各用一条语句删除；都是本应用创建的文件，不需要用户确认
+ */
+public class OrphanSweeper {
+    private static final String TAG = "OrphanSweeper";
+    // 比这更新的待处理行可能还在写入，不处理
+    private static final long PENDING_MIN_AGE_SECONDS = 6 * 60 * 60;
+    private static final int CHUNK_SIZE = 500;
+
+    // 图片副本：MediaStore 重名时生成 "name (1).jpg"
+    private static final Pattern IMAGE_COPY_NAME = Pattern.compile("^(.+?) ?\\(\\d+\\)(\\.[^.]+)$");
+    // 视频副本：复制时加了毫秒时间戳 "name_1700000000000.mp4"
+    private static final Pattern VIDEO_COPY_NAME = Pattern.compile("^(.+)_\\d{13}(\\.[^.]+)$");
+
+    private final Context context;
+    private final ContentResolver resolver;
+    private final PhotoManager photoManager;
+
+    public OrphanSweeper(Context context) {
+        this.context = context.getApplicationContext();
+        this.resolver = this.context.getContentResolver();
+        this.photoManager = new PhotoManager(this.context);
+    }
+
+    /**
+     * 执行一次清理（后台线程）
+     *
+     * @return 删除的文件数
+     */
+    public int sweep() {
+        List<Long> imageIds = new ArrayList<>();
+        List<Long> videoIds = new ArrayList<>();
+
+        List<Long> pendingImages = findStalePendingIds(MediaStore.Images.Media.EXTERNAL_CONTENT_URI);
+        List<Long> pendingVideos = findStalePendingIds(MediaStore.Video.Media.EXTERNAL_CONTENT_URI);
+        imageIds.addAll(pendingImages);
+        videoIds.addAll(pendingVideos);
+
+        // 副本 -> 原文件
+        Map<Photo, Photo> copies = findDuplicateCopies();
+        for (Photo copy : copies.keySet()) {
+            (copy.isVideo() ? videoIds : imageIds).add(copy.getId());
+        }
+
+        int deleted = deleteOwned(resolver, MediaStore.Images.Media.EXTERNAL_CONTENT_URI, imageIds)
+                + deleteOwned(resolver, MediaStore.Video.Media.EXTERNAL_CONTENT_URI, videoIds);
+        Log.d(TAG, "清理完成: 待处理行 " + (pendingImages.size() + pendingVideos.size())
+                + ", 副本 " + copies.size() + ", 已删除 " + deleted);
+
+        if (!copies.isEmpty()) {
+            List<Long> copyIds = new ArrayList<>();
+            for (Photo copy : copies.keySet()) {
+                copyIds.add(copy.getId());
+            }
+            // 确认哪些副本真的删掉了
+            Set<Long> remaining = new HashSet<>();
+            for (Photo photo : photoManager.getPhotosByIds(copyIds)) {
+                remaining.add(photo.getId());
+            }
+            List<Long> removedIds = new ArrayList<>();
+            for (Map.Entry<Photo, Photo> entry : copies.entrySet()) {
+                if (!remaining.contains(entry.getKey().getId())) {
+                    removedIds.add(entry.getKey().getId());
+                    keepLaterDisplayDay(entry.getValue(), entry.getKey());
+                }
+            }
+            BulkMediaMutator.forgetDeleted(context, removedIds);
+        }
+        return deleted;
+    }
+
+    /**
+     * 本应用创建、超过一定时间仍是 IS_PENDING 的行（Android 10+才有）
+     */
+    private List<Long> findStalePendingIds(Uri collection) {
+        List<Long> ids = new ArrayList<>();
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return ids;
+        }
+        String selection = MediaStore.MediaColumns.IS_PENDING + "=1 AND "
+                + MediaStore.MediaColumns.OWNER_PACKAGE_NAME + "=? AND "
+                + MediaStore.MediaColumns.DATE_ADDED + "<?";
+        String[] selectionArgs = {
+                context.getPackageName(),
+                String.valueOf(System.currentTimeMillis() / 1000 - PENDING_MIN_AGE_SECONDS)
+        };
+        String[] projection = {MediaStore.MediaColumns._ID};
+
+        Cursor cursor;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            Bundle args = new Bundle();
+            args.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, selection);
+            args.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, selectionArgs);
+            args.putInt(MediaStore.QUERY_ARG_MATCH_PENDING, MediaStore.MATCH_ONLY);
+            cursor = resolver.query(collection, projection, args, null);
+        } else {
+            cursor = resolver.query(MediaStore.setIncludePending(collection), projection,
+                    selection, selectionArgs, null);
+        }
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    ids.add(cursor.getLong(0));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 找出内容与同目录下原文件完全相同的副本（只找本应用创建的）
+     * Android 10以下无法知道文件是谁创建的，同名同内容的可能是用户自己的文件，不处理
+     */
+    private Map<Photo, Photo> findDuplicateCopies() {
+        Set<Long> owned = findOwnedIds();
+        if (owned == null || owned.isEmpty()) {
+            return new HashMap<>();
+        }
+        List<Photo> all = photoManager.getAllPhotos();
+
+        // 目录 + 文件名 -> 媒体
+        Map<String, Photo> byPath = new HashMap<>(all.size() * 2);
+        for (Photo photo : all) {
+            if (photo.getPath() != null) {
+                byPath.put(photo.getPath(), photo);
+            }
+        }
+
+        Map<Photo, Photo> copies = new HashMap<>();
+        Map<Long, byte[]> checksums = new HashMap<>();
+        for (Photo candidate : all) {
+            if (!owned.contains(candidate.getId())) {
+                continue;
+            }
+            Photo original = findOriginal(candidate, byPath);
+            if (original == null || original.getSize() != candidate.getSize()) {
+                continue;
+            }
+            byte[] originalSum = checksum(original, checksums);
+            byte[] copySum = checksum(candidate, checksums);
+            if (originalSum != null && copySum != null && Arrays.equals(originalSum, copySum)) {
+                copies.put(candidate, original);
+            }
+        }
+        return copies;
+    }
+
+    /**
+     * 按副本的命名规则推出原文件路径
+     */
+    private static Photo findOriginal(Photo candidate, Map<String, Photo> byPath) {
+        String path = candidate.getPath();
+        if (path == null) {
+            return null;
+        }
+        int slash = path.lastIndexOf('/');
+        String dir = path.substring(0, slash + 1);
+        String name = path.substring(slash + 1);
+        Matcher matcher = (candidate.isVideo() ? VIDEO_COPY_NAME : IMAGE_COPY_NAME).matcher(name);
+        if (!matcher.matches()) {
+            return null;
+        }
+        Photo original = byPath.get(dir + matcher.group(1) + matcher.group(2));
+        return original != null && original.getId() != candidate.getId() ? original : null;
+    }
+
+    /**
+     * 副本是为了推迟显示而创建的，删除副本后原文件沿用较晚的显示日期
+     */
+    private void keepLaterDisplayDay(Photo original, Photo copy) {
+        long copyDay = photoManager.getDisplayEpochDay(copy);
+        if (copyDay > photoManager.getDisplayEpochDay(original)) {
+            MediaJobQueue.getInstance(context).enqueue(Collections.singletonList(
+                    MediaJobQueue.Job.setDisplayDay(original.getId(), copyDay)));
+            MediaIndex.getInstance(context).put(original, copyDay);
+        }
+    }
+
+    /**
+     * 本应用创建的媒体ID；Android 10以下没有所有者信息，返回null
+     */
+    private Set<Long> findOwnedIds() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return null;
+        }
+        Set<Long> ids = new HashSet<>();
+        String selection = MediaStore.MediaColumns.OWNER_PACKAGE_NAME + "=?";
+        String[] selectionArgs = {context.getPackageName()};
+        for (Uri collection : new Uri[] {MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                MediaStore.Video.Media.EXTERNAL_CONTENT_URI}) {
+            try (Cursor cursor = resolver.query(collection, new String[] {MediaStore.MediaColumns._ID},
+                    selection, selectionArgs, null)) {
+                if (cursor != null) {
+                    while (cursor.moveToNext()) {
+                        ids.add(cursor.getLong(0));
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    private byte[] checksum(Photo photo, Map<Long, byte[]> cache) {
+        if (cache.containsKey(photo.getId())) {
+            return cache.get(photo.getId());
+        }
+        byte[] sum = null;
+        try (InputStream in = resolver.openInputStream(BulkMediaMutator.getContentUri(photo))) {
+            if (in != null) {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+                sum = digest.digest();
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "计算校验值失败: " + photo.getPath(), e);
+        }
+        cache.put(photo.getId(), sum);
+        return sum;
+    }
+
+    /**
+     * 按 _id IN 分块删除本应用创建的文件（不需要用户确认），包括待处理的行
+     */
+    static int deleteOwned(ContentResolver resolver, Uri collection, List<Long> ids) {
+        int deleted = 0;
+        for (int start = 0; start < ids.size(); start += CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(start, Math.min(start + CHUNK_SIZE, ids.size()));
+            StringBuilder selection = new StringBuilder(MediaStore.MediaColumns._ID).append(" IN (");
+            String[] args = new String[chunk.size()];
+            for (int i = 0; i < chunk.size(); i++) {
+                selection.append(i == 0 ? "?" : ",?");
+                args[i] = String.valueOf(chunk.get(i));
+            }
+            selection.append(')');
+            try {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                    Bundle extras = new Bundle();
+                    extras.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, selection.toString());
+                    extras.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, args);
+                    extras.putInt(MediaStore.QUERY_ARG_MATCH_PENDING, MediaStore.MATCH_INCLUDE);
+                    deleted += resolver.delete(collection, extras);
+                } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                    deleted += resolver.delete(MediaStore.setIncludePending(collection),
+                            selection.toString(), args);
+                } else {
+                    deleted += resolver.delete(collection, selection.toString(), args);
+                }
+            } catch (SecurityException e) {
+                Log.w(TAG, "没有权限删除，跳过 " + chunk.size() + " 个文件", e);
+            }
+        }
+        return deleted;
+    }
+}
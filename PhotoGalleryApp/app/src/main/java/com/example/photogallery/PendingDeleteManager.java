@@ -1,14 +1,46 @@
 package com.example.photogallery;
 
+import android.content.Context;
+import android.util.Log;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 管理待删除的照片，支持撤销操作
- * 实际删除会在退出Activity时执行
+ * 实际删除会在退出Activity时执行，延迟操作只修改显示日期，不需要删除文件
+ * 每次添加和撤销都会追加写入日志文件，进程被杀后可以在下次启动时恢复
+ * 每个查看会话有自己的日志文件，在专用的日志线程上按顺序追加（滑动时不暂停），点击时不在主线程上写文件；
+ * 一个会话清空日志不会影响其他会话和上次留下的日志
  */
 public class PendingDeleteManager {
+    private static final String TAG = "PendingDeleteManager";
+    private static final String JOURNAL_DIR = "pending_deletes";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final String OP_ADD = "A";
+    private static final String OP_UNDO = "U";
+
+    // 本进程中还在使用的会话日志，恢复时跳过
+    private static final Set<File> activeJournals = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private static final AtomicInteger sessionCount = new AtomicInteger();
+
     private LinkedList<PendingDelete> pendingDeletes = new LinkedList<>();
+    private final File journalFile;
+    private final Executor journalExecutor;
 
     public static class PendingDelete {
         public static final int TYPE_DELETE = 1;
@@ -17,20 +49,20 @@ public class PendingDeleteManager {
         private Photo photo;
         private int originalPosition;
         private int actionType;
-        private long newPhotoId; // 仅用于TYPE_DELAY
+        private long previousDisplayDay; // 仅用于TYPE_DELAY，撤销时恢复的覆盖值
 
         public PendingDelete(Photo photo, int originalPosition, int actionType) {
             this.photo = photo;
             this.originalPosition = originalPosition;
             this.actionType = actionType;
-            this.newPhotoId = -1;
+            this.previousDisplayDay = DisplayDateStore.NO_OVERRIDE;
         }
 
-        public PendingDelete(Photo photo, int originalPosition, int actionType, long newPhotoId) {
+        public PendingDelete(Photo photo, int originalPosition, int actionType, long previousDisplayDay) {
             this.photo = photo;
             this.originalPosition = originalPosition;
             this.actionType = actionType;
-            this.newPhotoId = newPhotoId;
+            this.previousDisplayDay = previousDisplayDay;
         }
 
         public Photo getPhoto() {
@@ -45,16 +77,26 @@ public class PendingDeleteManager {
             return actionType;
         }
 
-        public long getNewPhotoId() {
-            return newPhotoId;
+        public long getPreviousDisplayDay() {
+            return previousDisplayDay;
         }
     }
 
+    public PendingDeleteManager(Context context) {
+        this.journalFile = new File(getJournalDir(context),
+                System.currentTimeMillis() + "_" + sessionCount.incrementAndGet() + JOURNAL_SUFFIX);
+        this.journalExecutor = AppExecutors.getInstance().journal();
+    }
+
     /**
      * 添加待删除记录
      */
     public void addPendingDelete(PendingDelete pendingDelete) {
         pendingDeletes.addFirst(pendingDelete);
+        activeJournals.add(journalFile);
+        appendJournal(OP_ADD + "," + pendingDelete.actionType + "," + pendingDelete.photo.getId() + ","
+                + pendingDelete.photo.getMediaType() + "," + pendingDelete.originalPosition + ","
+                + pendingDelete.previousDisplayDay);
     }
 
     /**
@@ -65,6 +107,7 @@ public class PendingDeleteManager {
         if (pendingDeletes.isEmpty()) {
             return null;
         }
+        appendJournal(OP_UNDO);
         return pendingDeletes.removeFirst();
     }
 
@@ -90,9 +133,159 @@ public class PendingDeleteManager {
     }
 
     /**
-     * 清空所有待删除记录
+     * 清空所有待删除记录（删除已完成或已取消），同时压缩日志
      */
     public void clear() {
         pendingDeletes.clear();
+        // 排在已提交的追加之后执行
+        journalExecutor.execute(() -> {
+            deleteJournal(journalFile);
+            activeJournals.remove(journalFile);
+        });
+    }
+
+    /**
+     * 计算撤销全部删除后的完整列表（只重建一次列表）
+     * 等价于按从新到旧的顺序逐个插回原位置，但只计算位置，不移动列表元素
+     *
+     * @param current 当前列表
+     * @param restored 要恢复的记录，从新到旧排列
+     * @return 恢复后的新列表
+     */
+    public static List<Photo> buildRestoredList(List<Photo> current, List<PendingDelete> restored) {
+        int k = restored.size();
+        int[] finalPositions = new int[k];
+        for (int i = 0; i < k; i++) {
+            int position = Math.min(restored.get(i).originalPosition, current.size() + i);
+            // 插入到position会让之前已恢复且位置不小于position的元素后移一位
+            for (int j = 0; j < i; j++) {
+                if (finalPositions[j] >= position) {
+                    finalPositions[j]++;
+                }
+            }
+            finalPositions[i] = position;
+        }
+
+        Photo[] result = new Photo[current.size() + k];
+        for (int i = 0; i < k; i++) {
+            result[finalPositions[i]] = restored.get(i).photo;
+        }
+        int next = 0;
+        for (Photo photo : current) {
+            while (result[next] != null) {
+                next++;
+            }
+            result[next++] = photo;
+        }
+
+        List<Photo> list = new ArrayList<>(result.length);
+        Collections.addAll(list, result);
+        return list;
+    }
+
+    /**
+     * 重放之前的会话留下的日志（在后台线程调用）
+     * 延迟操作在添加时已经生效，不需要处理；返回仍需确认删除的记录
+     * 记录中只有媒体ID和类型，不需要重新扫描媒体库
+     */
+    public static List<PendingDelete> recover(Context context) {
+        // 多个会话可能删除过同一个文件
+        Map<Long, PendingDelete> deletes = new LinkedHashMap<>();
+        for (File file : listLeftoverJournals(context)) {
+            for (PendingDelete pending : recoverJournal(file)) {
+                deletes.put(pending.photo.getId(), pending);
+            }
+        }
+        return new ArrayList<>(deletes.values());
+    }
+
+    private static List<PendingDelete> recoverJournal(File file) {
+        LinkedList<PendingDelete> stack = new LinkedList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.equals(OP_UNDO)) {
+                    if (!stack.isEmpty()) {
+                        stack.removeFirst();
+                    }
+                    continue;
+                }
+                String[] parts = line.split(",");
+                if (parts.length != 6 || !parts[0].equals(OP_ADD)) {
+                    // 写到一半被杀的最后一行，忽略
+                    continue;
+                }
+                Photo photo = new Photo(Long.parseLong(parts[2]), null, null, 0, 0,
+                        Integer.parseInt(parts[3]), 0);
+                stack.addFirst(new PendingDelete(photo, Integer.parseInt(parts[4]),
+                        Integer.parseInt(parts[1]), Long.parseLong(parts[5])));
+            }
+        } catch (IOException | NumberFormatException e) {
+            Log.e(TAG, "读取待删除日志失败", e);
+        }
+
+        List<PendingDelete> deletes = new ArrayList<>();
+        for (PendingDelete pending : stack) {
+            if (pending.actionType == PendingDelete.TYPE_DELETE) {
+                deletes.add(pending);
+            }
+        }
+        return deletes;
+    }
+
+    /**
+     * 丢弃之前的会话留下的日志（恢复完成或用户放弃删除），正在使用的不受影响
+     */
+    public static void discardJournal(Context context) {
+        final Context appContext = context.getApplicationContext();
+        AppExecutors.getInstance().execute(AppExecutors.LANE_MUTATION, () -> {
+            for (File file : listLeftoverJournals(appContext)) {
+                deleteJournal(file);
+            }
+        });
+    }
+
+    private static List<File> listLeftoverJournals(Context context) {
+        List<File> leftovers = new ArrayList<>();
+        File[] files = getJournalDir(context).listFiles();
+        if (files == null) {
+            return leftovers;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(JOURNAL_SUFFIX) && !activeJournals.contains(file)) {
+                leftovers.add(file);
+            }
+        }
+        return leftovers;
+    }
+
+    private static File getJournalDir(Context context) {
+        return new File(context.getApplicationContext().getFilesDir(), JOURNAL_DIR);
+    }
+
+    private static void deleteJournal(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "删除待删除日志失败");
+        }
+    }
+
+    /**
+     * 在日志执行器上追加一行日志并同步到磁盘
+     */
+    private void appendJournal(String line) {
+        journalExecutor.execute(() -> {
+            File dir = journalFile.getParentFile();
+            if (!dir.exists() && !dir.mkdirs()) {
+                Log.e(TAG, "创建待删除日志目录失败");
+                return;
+            }
+            try (FileOutputStream out = new FileOutputStream(journalFile, true)) {
+                out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+                out.getFD().sync();
+            } catch (IOException e) {
+                Log.e(TAG, "写入待删除日志失败", e);
+            }
+        });
     }
 }
@@ -14,6 +14,10 @@ public class Photo implements Serializable {
     private long size;
     private int mediaType; // 1=图片, 2=视频
     private long duration; // 视频时长(毫秒)
+    private long dateModified; // DATE_MODIFIED(秒)，文件内容变化时改变，用作派生缓存的版本
+    private int width; // 像素宽度（未旋转），0表示未知
+    private int height; // 像素高度（未旋转），0表示未知
+    private int orientation; // 显示时需要顺时针旋转的角度：0/90/180/270
     private transient Uri uri; // transient 因为 Uri 不能直接序列化
 
     public Photo(long id, String path, String name, long dateAdded, long size, int mediaType, long duration) {
@@ -65,4 +69,47 @@ public class Photo implements Serializable {
     public long getDuration() {
         return duration;
     }
+
+    public long getDateModified() {
+        return dateModified;
+    }
+
+    public void setDateModified(long dateModified) {
+        this.dateModified = dateModified;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getOrientation() {
+        return orientation;
+    }
+
+    /**
+     * 设置MediaStore中记录的尺寸和方向
+     */
+    public void setDimensions(int width, int height, int orientation) {
+        this.width = width;
+        this.height = height;
+        this.orientation = orientation;
+    }
+
+    /**
+     * 按方向旋转后的显示宽度，0表示未知
+     */
+    public int getDisplayWidth() {
+        return orientation % 180 == 0 ? width : height;
+    }
+
+    /**
+     * 按方向旋转后的显示高度，0表示未知
+     */
+    public int getDisplayHeight() {
+        return orientation % 180 == 0 ? height : width;
+    }
 }
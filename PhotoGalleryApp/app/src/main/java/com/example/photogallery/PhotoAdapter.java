@@ -1,6 +1,7 @@
 package com.example.photogallery;
 
 import android.content.Context;
+import android.graphics.drawable.Drawable;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -9,13 +10,17 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.DecodeFormat;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-public class PhotoAdapter extends RecyclerView.Adapter<PhotoAdapter.PhotoViewHolder> {
+public class PhotoAdapter extends RecyclerView.Adapter<PhotoAdapter.PhotoViewHolder>
+        implements VideoPosterCache.OnPosterReadyListener {
     private Context context;
     private List<Photo> photos;
     private OnPhotoClickListener listener;
@@ -23,6 +28,9 @@ public class PhotoAdapter extends RecyclerView.Adapter<PhotoAdapter.PhotoViewHol
     private OnSelectionChangedListener selectionChangedListener;
     private boolean isSelectMode = false;
     private Set<Integer> selectedPositions = new HashSet<>();
+    // 当前密度的缩略图档位，以及切换前的档位（切换过程中先显示已缓存的旧档位）
+    private int thumbnailSize = GridDensity.thumbnailSize(GridDensity.DEFAULT_COLUMNS);
+    private int previousThumbnailSize = 0;
 
     public interface OnPhotoClickListener {
         void onPhotoClick(int position);
@@ -58,6 +66,17 @@ public class PhotoAdapter extends RecyclerView.Adapter<PhotoAdapter.PhotoViewHol
         notifyDataSetChanged();
     }
 
+    /**
+     * 切换缩略图档位（网格列数变化时调用），由调用方刷新可见项
+     */
+    public void setThumbnailSize(int size) {
+        if (size == thumbnailSize) {
+            return;
+        }
+        previousThumbnailSize = thumbnailSize;
+        thumbnailSize = size;
+    }
+
     public boolean isSelectMode() {
         return isSelectMode;
     }
@@ -85,6 +104,18 @@ public class PhotoAdapter extends RecyclerView.Adapter<PhotoAdapter.PhotoViewHol
         }
     }
 
+    /**
+     * 选中指定位置（例如相似视图中除每组第一张以外的图片）
+     */
+    public void selectPositions(List<Integer> positions) {
+        selectedPositions.clear();
+        selectedPositions.addAll(positions);
+        notifyDataSetChanged();
+        if (selectionChangedListener != null) {
+            selectionChangedListener.onSelectionChanged(selectedPositions.size());
+        }
+    }
+
     public void clearSelection() {
         selectedPositions.clear();
         notifyDataSetChanged();
@@ -107,6 +138,62 @@ public class PhotoAdapter extends RecyclerView.Adapter<PhotoAdapter.PhotoViewHol
         return selectedPositions.size();
     }
 
+    /**
+     * 缩略图请求（视频用封面缓存；图片用文件路径），MediaIndexJobService 用同样的请求预热磁盘缓存
+     * 视频还没有封面时不加载（只显示格子底色），不再从视频里另取一帧，封面生成后由 onPosterReady 刷新
+     * 每个档位是独立的缓存键；图片按尺寸采样解码，最小档位不会整图解码，并使用RGB_565减半内存
+     */
+    static RequestBuilder<Drawable> thumbnailRequest(Context context, RequestManager glide, Photo photo, int size) {
+        File model = photo.isVideo()
+                ? VideoPosterCache.getInstance(context).getPoster(photo)
+                : new File(photo.getPath());
+        RequestBuilder<Drawable> request = glide.load(model)
+                .override(size)
+                .centerCrop();
+        if (GridDensity.lowerTier(size) == 0) {
+            request = request.format(DecodeFormat.PREFER_RGB_565);
+        }
+        return request;
+    }
+
+    /**
+     * 先显示已缓存的相邻档位（切换前的档位，或者小一档），只读缓存，不会为此解码
+     */
+    private RequestBuilder<Drawable> requestWithPlaceholderTier(RequestManager glide, Photo photo) {
+        RequestBuilder<Drawable> request = thumbnailRequest(context, glide, photo, thumbnailSize);
+        int fallbackSize = previousThumbnailSize > 0 && previousThumbnailSize != thumbnailSize
+                ? previousThumbnailSize : GridDensity.lowerTier(thumbnailSize);
+        if (fallbackSize > 0) {
+            request = request.thumbnail(thumbnailRequest(context, glide, photo, fallbackSize).onlyRetrieveFromCache(true));
+        }
+        return request;
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        VideoPosterCache.getInstance(context).addOnPosterReadyListener(this);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        VideoPosterCache.getInstance(context).removeOnPosterReadyListener(this);
+    }
+
+    /**
+     * 视频封面生成后重新绑定对应的格子（同时更新从封面读到的时长）
+     */
+    @Override
+    public void onPosterReady(long mediaId) {
+        for (int i = 0; i < photos.size(); i++) {
+            if (photos.get(i).getId() == mediaId) {
+                notifyItemChanged(i);
+                return;
+            }
+        }
+    }
+
     @NonNull
     @Override
     public PhotoViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -121,27 +208,22 @@ public class PhotoAdapter extends RecyclerView.Adapter<PhotoAdapter.PhotoViewHol
         // 加载缩略图
         if (photo.isVideo()) {
             // 视频：加载视频缩略图
-            Glide.with(context)
-                    .load(photo.getUri())
-                    .centerCrop()
-                    .into(holder.imageViewPhoto);
+            requestWithPlaceholderTier(Glide.with(context), photo).into(holder.imageViewPhoto);
 
             // 显示播放图标
             holder.imageViewPlayIcon.setVisibility(View.VISIBLE);
 
             // 显示视频时长
-            if (photo.getDuration() > 0) {
-                holder.textViewDuration.setText(formatDuration(photo.getDuration()));
+            long duration = VideoPosterCache.getInstance(context).getDurationMs(photo);
+            if (duration > 0) {
+                holder.textViewDuration.setText(formatDuration(duration));
                 holder.textViewDuration.setVisibility(View.VISIBLE);
             } else {
                 holder.textViewDuration.setVisibility(View.GONE);
             }
         } else {
             // 图片
-            Glide.with(context)
-                    .load(new File(photo.getPath()))
-                    .centerCrop()
-                    .into(holder.imageViewPhoto);
+            requestWithPlaceholderTier(Glide.with(context), photo).into(holder.imageViewPhoto);
 
             // 隐藏视频相关元素
             holder.imageViewPlayIcon.setVisibility(View.GONE);
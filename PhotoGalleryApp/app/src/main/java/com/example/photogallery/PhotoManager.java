@@ -4,28 +4,49 @@ import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
 import android.provider.MediaStore;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
 
 public class PhotoManager {
     private Context context;
-    private static final int DELAY_DAYS = 3; // 延迟天数
+    public static final int DELAY_DAYS = 3; // 延迟天数
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private DisplayDateStore displayDateStore;
+    private MediaJobQueue jobQueue;
+    private MediaIndex mediaIndex;
 
     public PhotoManager(Context context) {
         this.context = context;
+        this.displayDateStore = DisplayDateStore.getInstance(context);
+        this.jobQueue = MediaJobQueue.getInstance(context);
+        this.mediaIndex = MediaIndex.getInstance(context);
     }
 
     /**
      * 从MediaStore获取所有图片
      */
     private List<Photo> getImages() {
+        return getImages(null, null);
+    }
+
+    /**
+     * 从MediaStore获取满足条件的图片
+     */
+    private List<Photo> getImages(String selection, String[] selectionArgs) {
         List<Photo> photos = new ArrayList<>();
         Uri uri = MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
         String[] projection = {
@@ -33,24 +54,26 @@ public class PhotoManager {
                 MediaStore.Images.Media.DATA,
                 MediaStore.Images.Media.DISPLAY_NAME,
                 MediaStore.Images.Media.DATE_ADDED,
-                MediaStore.Images.Media.SIZE
+                MediaStore.Images.Media.DATE_MODIFIED,
+                MediaStore.Images.Media.SIZE,
+                MediaStore.Images.Media.WIDTH,
+                MediaStore.Images.Media.HEIGHT,
+                MediaStore.Images.Media.ORIENTATION
         };
 
-        ContentResolver contentResolver = context.getContentResolver();
-        Cursor cursor = contentResolver.query(
-                uri,
-                projection,
-                null,
-                null,
-                MediaStore.Images.Media.DATE_ADDED + " DESC"
-        );
+        Cursor cursor = queryVisible(uri, projection, selection, selectionArgs,
+                MediaStore.Images.Media.DATE_ADDED + " DESC");
 
         if (cursor != null) {
             int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media._ID);
             int pathColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.DATA);
             int nameColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.DISPLAY_NAME);
             int dateColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.DATE_ADDED);
+            int modifiedColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.DATE_MODIFIED);
             int sizeColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.SIZE);
+            int widthColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.WIDTH);
+            int heightColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.HEIGHT);
+            int orientationColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.ORIENTATION);
 
             while (cursor.moveToNext()) {
                 long id = cursor.getLong(idColumn);
@@ -62,6 +85,10 @@ public class PhotoManager {
                 // 只扫描指定的两个目录
                 if (isInTargetDirectory(path)) {
                     Photo photo = new Photo(id, path, name, dateAdded, size, Photo.TYPE_IMAGE, 0);
+                    photo.setDateModified(cursor.getLong(modifiedColumn));
+                    // 刚写入的文件可能还没有尺寸（为0），使用处会退回到读取文件头
+                    photo.setDimensions(cursor.getInt(widthColumn), cursor.getInt(heightColumn),
+                            cursor.getInt(orientationColumn));
                     photo.setUri(Uri.withAppendedPath(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, String.valueOf(id)));
                     photos.add(photo);
                 }
@@ -76,33 +103,46 @@ public class PhotoManager {
      * 从MediaStore获取所有视频
      */
     private List<Photo> getVideos() {
+        return getVideos(null, null);
+    }
+
+    /**
+     * 从MediaStore获取满足条件的视频
+     */
+    private List<Photo> getVideos(String selection, String[] selectionArgs) {
         List<Photo> videos = new ArrayList<>();
         Uri uri = MediaStore.Video.Media.EXTERNAL_CONTENT_URI;
-        String[] projection = {
+        List<String> columns = new ArrayList<>(Arrays.asList(
                 MediaStore.Video.Media._ID,
                 MediaStore.Video.Media.DATA,
                 MediaStore.Video.Media.DISPLAY_NAME,
                 MediaStore.Video.Media.DATE_ADDED,
+                MediaStore.Video.Media.DATE_MODIFIED,
                 MediaStore.Video.Media.SIZE,
-                MediaStore.Video.Media.DURATION
-        };
+                MediaStore.Video.Media.DURATION,
+                MediaStore.Video.Media.WIDTH,
+                MediaStore.Video.Media.HEIGHT
+        ));
+        // 视频的方向列 Android 10 才有
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            columns.add(MediaStore.Video.Media.ORIENTATION);
+        }
+        String[] projection = columns.toArray(new String[0]);
 
-        ContentResolver contentResolver = context.getContentResolver();
-        Cursor cursor = contentResolver.query(
-                uri,
-                projection,
-                null,
-                null,
-                MediaStore.Video.Media.DATE_ADDED + " DESC"
-        );
+        Cursor cursor = queryVisible(uri, projection, selection, selectionArgs,
+                MediaStore.Video.Media.DATE_ADDED + " DESC");
 
         if (cursor != null) {
             int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media._ID);
             int pathColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DATA);
             int nameColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DISPLAY_NAME);
             int dateColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DATE_ADDED);
+            int modifiedColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DATE_MODIFIED);
             int sizeColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.SIZE);
             int durationColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.DURATION);
+            int widthColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.WIDTH);
+            int heightColumn = cursor.getColumnIndexOrThrow(MediaStore.Video.Media.HEIGHT);
+            int orientationColumn = cursor.getColumnIndex(MediaStore.Video.Media.ORIENTATION);
 
             while (cursor.moveToNext()) {
                 long id = cursor.getLong(idColumn);
@@ -115,6 +155,9 @@ public class PhotoManager {
                 // 只扫描指定的两个目录
                 if (isInTargetDirectory(path)) {
                     Photo video = new Photo(id, path, name, dateAdded, size, Photo.TYPE_VIDEO, duration);
+                    video.setDateModified(cursor.getLong(modifiedColumn));
+                    video.setDimensions(cursor.getInt(widthColumn), cursor.getInt(heightColumn),
+                            orientationColumn >= 0 ? cursor.getInt(orientationColumn) : 0);
                     video.setUri(Uri.withAppendedPath(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, String.valueOf(id)));
                     videos.add(video);
                 }
@@ -125,6 +168,27 @@ public class PhotoManager {
         return videos;
     }
 
+    /**
+     * 查询媒体集合，排除回收站中和未写完（IS_PENDING）的文件
+     * Android 11+显式指定匹配规则，避免已移到回收站的文件重新出现在日期文件夹中
+     */
+    private Cursor queryVisible(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                                String sortOrder) {
+        ContentResolver contentResolver = context.getContentResolver();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            Bundle args = new Bundle();
+            if (selection != null) {
+                args.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, selection);
+                args.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, selectionArgs);
+            }
+            args.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_EXCLUDE);
+            args.putInt(MediaStore.QUERY_ARG_MATCH_PENDING, MediaStore.MATCH_EXCLUDE);
+            args.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, sortOrder);
+            return contentResolver.query(uri, projection, args, null);
+        }
+        return contentResolver.query(uri, projection, selection, selectionArgs, sortOrder);
+    }
+
     /**
      * 获取所有媒体文件（图片+视频）
      */
@@ -140,16 +204,126 @@ public class PhotoManager {
     }
 
     /**
-     * 根据图片的 DATE_ADDED + DELAY_DAYS 对图片进行分组
+     * 按ID查询媒体（只返回仍存在且在目标目录中的），用于增量更新索引
+     * 图片和视频在不同的集合中，两个都要查
+     */
+    public List<Photo> getPhotosByIds(List<Long> ids) {
+        List<Photo> result = new ArrayList<>();
+        // SQLite参数上限为999，分块查询
+        for (int start = 0; start < ids.size(); start += 500) {
+            List<Long> chunk = ids.subList(start, Math.min(start + 500, ids.size()));
+            StringBuilder selection = new StringBuilder(MediaStore.MediaColumns._ID).append(" IN (");
+            String[] args = new String[chunk.size()];
+            for (int i = 0; i < chunk.size(); i++) {
+                selection.append(i == 0 ? "?" : ",?");
+                args[i] = String.valueOf(chunk.get(i));
+            }
+            selection.append(')');
+            result.addAll(getImages(selection.toString(), args));
+            result.addAll(getVideos(selection.toString(), args));
+        }
+        return result;
+    }
+
+    /**
+     * 外部存储媒体库当前的版本号（Android 11+），之后修改过的媒体 GENERATION_MODIFIED 大于它；更低版本返回-1
+     */
+    public long getGeneration() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return MediaStore.getGeneration(context, MediaStore.VOLUME_EXTERNAL_PRIMARY);
+        }
+        return -1;
+    }
+
+    /**
+     * 上次查询之后新增或修改过的媒体ID（包括移到回收站的，调用方用 getPhotosByIds 区分仍可见的和已移除的）
+     * Android 11+ 按媒体库版本号；更低版本没有版本号，只能按 DATE_ADDED 找出新增的
+     *
+     * @param generation       上次查询前的 getGeneration()
+     * @param dateAddedSeconds 上次查询到的最大 DATE_ADDED（秒），同一秒内的会重复返回
+     */
+    public List<Long> getChangedIdsSince(long generation, long dateAddedSeconds) {
+        String selection;
+        String[] selectionArgs;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R && generation >= 0) {
+            selection = MediaStore.MediaColumns.GENERATION_MODIFIED + " > ?";
+            selectionArgs = new String[] {String.valueOf(generation)};
+        } else {
+            selection = MediaStore.MediaColumns.DATE_ADDED + " >= ?";
+            selectionArgs = new String[] {String.valueOf(dateAddedSeconds)};
+        }
+        List<Long> ids = new ArrayList<>();
+        queryIds(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, selection, selectionArgs, ids);
+        queryIds(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, selection, selectionArgs, ids);
+        return ids;
+    }
+
+    /**
+     * 当前仍可见的全部媒体ID（不在回收站、已写完），只查ID列
+     * 其他应用删除的媒体不会出现在 getChangedIdsSince 中，用它和媒体目录比较找出来
+     */
+    public Set<Long> getVisibleIds() {
+        Set<Long> ids = new HashSet<>();
+        String[] projection = {MediaStore.MediaColumns._ID};
+        Uri[] uris = {MediaStore.Images.Media.EXTERNAL_CONTENT_URI, MediaStore.Video.Media.EXTERNAL_CONTENT_URI};
+        for (Uri uri : uris) {
+            Cursor cursor = queryVisible(uri, projection, null, null, null);
+            if (cursor == null) {
+                continue;
+            }
+            try {
+                while (cursor.moveToNext()) {
+                    ids.add(cursor.getLong(0));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return ids;
+    }
+
+    private void queryIds(Uri uri, String selection, String[] selectionArgs, List<Long> ids) {
+        String[] projection = {MediaStore.MediaColumns._ID};
+        Cursor cursor;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            Bundle args = new Bundle();
+            args.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, selection);
+            args.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, selectionArgs);
+            // 移到回收站的也要返回，调用方据此把它们移除
+            args.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_INCLUDE);
+            cursor = context.getContentResolver().query(uri, projection, args, null);
+        } else {
+            cursor = context.getContentResolver().query(uri, projection, selection, selectionArgs, null);
+        }
+        if (cursor == null) {
+            return;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * 根据图片的显示日期对图片进行分组（覆盖表优先，否则 DATE_ADDED + DELAY_DAYS）
      *
      * @return Map<日期字符串, 图片列表>，按日期倒序排列
      */
     public Map<String, List<Photo>> getPhotosByDisplayDate() {
+        return groupByDisplayDate(getAllPhotos());
+    }
+
+    /**
+     * 对已查询到的媒体列表按显示日期分组，不再查询MediaStore
+     */
+    public Map<String, List<Photo>> groupByDisplayDate(List<Photo> allPhotos) {
         Map<String, List<Photo>> photoMap = new LinkedHashMap<>();
-        List<Photo> allPhotos = getAllPhotos();
 
         for (Photo photo : allPhotos) {
-            String displayDate = getDisplayDate(photo.getDateAdded());
+            String displayDate = getPhotoDisplayDate(photo);
 
             if (!photoMap.containsKey(displayDate)) {
                 photoMap.put(displayDate, new ArrayList<>());
@@ -171,7 +345,7 @@ public class PhotoManager {
         List<Photo> allPhotos = getAllPhotos();
 
         for (Photo photo : allPhotos) {
-            String displayDate = getDisplayDate(photo.getDateAdded());
+            String displayDate = getPhotoDisplayDate(photo);
             if (displayDate.equals(dateString)) {
                 photos.add(photo);
             }
@@ -220,7 +394,91 @@ public class PhotoManager {
      * @return 日期字符串
      */
     public String getPhotoDisplayDate(Photo photo) {
-        return getDisplayDate(photo.getDateAdded());
+        return formatEpochDay(getDisplayEpochDay(photo));
+    }
+
+    /**
+     * 获取图片的显示日期（epoch-day）
+     * 覆盖表中有记录时使用覆盖值，否则为 DATE_ADDED + DELAY_DAYS
+     */
+    public long getDisplayEpochDay(Photo photo) {
+        long override = getOverrideDay(photo.getId());
+        if (override != DisplayDateStore.NO_OVERRIDE) {
+            return override;
+        }
+        return toEpochDay(photo.getDateAdded() * 1000) + DELAY_DAYS;
+    }
+
+    /**
+     * 获取覆盖值，队列中尚未执行的任务优先
+     */
+    private long getOverrideDay(long mediaId) {
+        Long pending = jobQueue.getPendingDisplayDay(mediaId);
+        if (pending != null) {
+            return pending;
+        }
+        return displayDateStore.getDisplayDay(mediaId);
+    }
+
+    /**
+     * 将图片推迟到今天之后的指定天数（只写覆盖表，不复制文件）
+     *
+     * @return 之前的覆盖值，用于撤销
+     */
+    public long postpone(Photo photo, int days) {
+        long previous = getOverrideDay(photo.getId());
+        long displayDay = getTodayEpochDay() + days;
+        jobQueue.enqueue(Collections.singletonList(
+                MediaJobQueue.Job.setDisplayDay(photo.getId(), displayDay)));
+        mediaIndex.put(photo, displayDay);
+        return previous;
+    }
+
+    /**
+     * 批量推迟，进度通过 MediaJobQueue 的监听器通知
+     */
+    public void postponeAll(List<Photo> photos, int days) {
+        long displayDay = getTodayEpochDay() + days;
+        List<MediaJobQueue.Job> jobs = new ArrayList<>(photos.size());
+        for (Photo photo : photos) {
+            jobs.add(MediaJobQueue.Job.setDisplayDay(photo.getId(), displayDay));
+        }
+        jobQueue.enqueue(jobs);
+        mediaIndex.putAll(photos, displayDay);
+    }
+
+    /**
+     * 撤销推迟操作，恢复之前的覆盖值
+     */
+    public void undoPostpone(Photo photo, long previousDay) {
+        jobQueue.enqueue(Collections.singletonList(
+                MediaJobQueue.Job.restoreDisplayDay(photo.getId(), previousDay)));
+        mediaIndex.put(photo, getDisplayEpochDay(photo));
+    }
+
+    /**
+     * 本地时区下的epoch-day
+     *
+     * @param millis 时间戳（毫秒）
+     */
+    public static long toEpochDay(long millis) {
+        return Math.floorDiv(millis + TimeZone.getDefault().getOffset(millis), DAY_MILLIS);
+    }
+
+    /**
+     * 今天的epoch-day
+     */
+    public static long getTodayEpochDay() {
+        return toEpochDay(System.currentTimeMillis());
+    }
+
+    /**
+     * 将epoch-day格式化为日期字符串，格式：yyyy-MM-dd
+     */
+    public static String formatEpochDay(long epochDay) {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+        sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return sdf.format(new Date(epochDay * DAY_MILLIS));
     }
 
     /**
@@ -0,0 +1,321 @@
+package com.example.photogallery;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.provider.MediaStore;
+import android.util.Log;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 把PNG截图重新编码为有损的WebP或JPEG以节省空间（用户主动触发）
+ * 多个工作线程并行解码和编码，线程数按核数和内存预算确定；每张图解码前按像素数从共享的内存预算中申请额度，
+ * 超长的拼接图会等其他线程释放额度后再处理，超出整个预算时改用RGB_565解码，仍然超出则跳过
+ * 新文件通过 FileOperationHelper 写到原文件所在的目录，并沿用原图的显示日期；
+ * 原文件由调用方用 BulkMediaMutator 删除（需要用户确认），原文件没有删除的新文件用 discard 删除
+ */
+public class ScreenshotCompactor {
+    private static final String TAG = "ScreenshotCompactor";
+    public static final int FORMAT_WEBP = 0;
+    public static final int FORMAT_JPEG = 1;
+
+    // 新文件小于原文件的这个比例才替换，否则保留原图
+    private static final float MIN_SAVING_RATIO = 0.9f;
+    // 估算并行度时按一张典型截图（1080x2400 ARGB_8888）计算
+    private static final long TYPICAL_BITMAP_BYTES = 1080L * 2400 * 4;
+
+    public interface ProgressListener {
+        void onProgress(int done, int total);
+    }
+
+    public static class Result {
+        private final List<Photo> originals = new ArrayList<>();
+        // 原图ID -> 新图ID
+        private final Map<Long, Long> compactedIds = new HashMap<>();
+        // 原图ID -> 节省的字节数
+        private final Map<Long, Long> savedBytes = new HashMap<>();
+        private int skippedCount = 0;
+        private int failedCount = 0;
+
+        /**
+         * 已生成新文件的原图（需要删除的）
+         */
+        public List<Photo> getOriginals() {
+            return originals;
+        }
+
+        /**
+         * 这些原图对应的新图ID
+         */
+        public List<Long> getCompactedIds(List<Long> originalIds) {
+            List<Long> ids = new ArrayList<>();
+            for (long id : originalIds) {
+                Long compactedId = compactedIds.get(id);
+                if (compactedId != null) {
+                    ids.add(compactedId);
+                }
+            }
+            return ids;
+        }
+
+        /**
+         * 删除这些原图后节省的字节数
+         */
+        public long getSavedBytes(List<Long> originalIds) {
+            long total = 0;
+            for (long id : originalIds) {
+                Long saved = savedBytes.get(id);
+                if (saved != null) {
+                    total += saved;
+                }
+            }
+            return total;
+        }
+
+        /**
+         * 压缩后不够小、或者太大无法解码而保留原样的图片数
+         */
+        public int getSkippedCount() {
+            return skippedCount;
+        }
+
+        public int getFailedCount() {
+            return failedCount;
+        }
+
+        private synchronized void add(Photo original, long compactedId, long compactedSize) {
+            originals.add(original);
+            compactedIds.put(original.getId(), compactedId);
+            savedBytes.put(original.getId(), original.getSize() - compactedSize);
+        }
+
+        private synchronized void addSkipped() {
+            skippedCount++;
+        }
+
+        private synchronized void addFailed() {
+            failedCount++;
+        }
+    }
+
+    private final Context context;
+    private final FileOperationHelper fileOperationHelper;
+
+    public ScreenshotCompactor(Context context) {
+        this.context = context.getApplicationContext();
+        this.fileOperationHelper = new FileOperationHelper(this.context);
+    }
+
+    /**
+     * 可以压缩的图片：PNG格式的截图
+     */
+    public static List<Photo> findCandidates(List<Photo> photos) {
+        List<Photo> candidates = new ArrayList<>();
+        for (Photo photo : photos) {
+            if (!photo.isVideo() && photo.getName() != null
+                    && photo.getName().toLowerCase().endsWith(".png")) {
+                candidates.add(photo);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * 压缩这些图片（阻塞，在后台线程调用），进度在主线程回调
+     *
+     * @param quality 编码质量 0~100
+     */
+    public Result compact(List<Photo> photos, int format, int quality, ProgressListener listener) {
+        Result result = new Result();
+        if (photos.isEmpty()) {
+            return result;
+        }
+
+        // 内存预算：Java堆上限的四分之一（Android 8+ 位图在native堆，这里同样用它保守估计）
+        long budget = Runtime.getRuntime().maxMemory() / 4;
+        int cores = Math.max(1, Runtime.getRuntime().availableProcessors());
+        int workers = (int) Math.max(1, Math.min(cores, budget / TYPICAL_BITMAP_BYTES));
+        // 额度以KB为单位；公平模式，大图不会被小图一直插队
+        Semaphore memory = new Semaphore(toPermits(budget), true);
+        Log.d(TAG, "开始压缩: " + photos.size() + " 张, " + workers + " 个线程, 预算 " + budget / 1024 / 1024 + "MB");
+
+        ExecutorService pool = AppExecutors.getInstance().newWorkerPool("compact", workers);
+        AtomicInteger done = new AtomicInteger();
+        int total = photos.size();
+        for (Photo photo : photos) {
+            pool.execute(() -> {
+                try {
+                    compactOne(photo, format, quality, budget, memory, result);
+                } catch (Exception e) {
+                    Log.e(TAG, "压缩失败: " + photo.getPath(), e);
+                    result.addFailed();
+                }
+                int count = done.incrementAndGet();
+                if (listener != null) {
+                    AppExecutors.getInstance().mainThread().execute(() -> listener.onProgress(count, total));
+                }
+            });
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        keepDisplayDays(result);
+        Log.d(TAG, "压缩完成: 替换 " + result.originals.size() + ", 跳过 " + result.skippedCount
+                + ", 失败 " + result.failedCount);
+        return result;
+    }
+
+    /**
+     * 删除原文件没有删掉的新文件（本应用创建的，不需要用户确认）
+     */
+    public void discard(List<Long> compactedIds) {
+        if (compactedIds.isEmpty()) {
+            return;
+        }
+        OrphanSweeper.deleteOwned(context.getContentResolver(),
+                MediaStore.Images.Media.EXTERNAL_CONTENT_URI, compactedIds);
+        BulkMediaMutator.forgetDeleted(context, compactedIds);
+    }
+
+    private void compactOne(Photo photo, int format, int quality, long budget, Semaphore memory, Result result)
+            throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(photo.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            result.addFailed();
+            return;
+        }
+
+        long pixels = (long) options.outWidth * options.outHeight;
+        Bitmap.Config config = Bitmap.Config.ARGB_8888;
+        long bytes = pixels * 4;
+        if (bytes > budget) {
+            // 很长的拼接图：截图不透明，RGB_565 只损失一点色深
+            config = Bitmap.Config.RGB_565;
+            bytes = pixels * 2;
+        }
+        if (bytes > budget) {
+            Log.w(TAG, "图片太大，跳过: " + photo.getPath() + " " + options.outWidth + "x" + options.outHeight);
+            result.addSkipped();
+            return;
+        }
+
+        File tempFile = File.createTempFile("compact_", format == FORMAT_WEBP ? ".webp" : ".jpg",
+                context.getCacheDir());
+        try {
+            // 只在解码和编码期间占用额度，写入MediaStore时释放
+            int permits = toPermits(bytes);
+            memory.acquireUninterruptibly(permits);
+            try {
+                options.inJustDecodeBounds = false;
+                options.inPreferredConfig = config;
+                Bitmap bitmap = BitmapFactory.decodeFile(photo.getPath(), options);
+                if (bitmap == null) {
+                    result.addFailed();
+                    return;
+                }
+                try (OutputStream out = new FileOutputStream(tempFile)) {
+                    if (!bitmap.compress(compressFormat(format), quality, out)) {
+                        result.addFailed();
+                        return;
+                    }
+                } finally {
+                    bitmap.recycle();
+                }
+            } finally {
+                memory.release(permits);
+            }
+
+            long compactedSize = tempFile.length();
+            if (compactedSize <= 0 || compactedSize >= photo.getSize() * MIN_SAVING_RATIO) {
+                result.addSkipped();
+                return;
+            }
+
+            long newId = fileOperationHelper.insertImage(photo.getPath(), compactedName(photo.getName(), format),
+                    format == FORMAT_WEBP ? "image/webp" : "image/jpeg", out -> {
+                        try (InputStream in = new FileInputStream(tempFile)) {
+                            byte[] buffer = new byte[64 * 1024];
+                            int read;
+                            while ((read = in.read(buffer)) != -1) {
+                                out.write(buffer, 0, read);
+                            }
+                        }
+                    });
+            if (newId < 0) {
+                result.addFailed();
+                return;
+            }
+            result.add(photo, newId, compactedSize);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * 新文件的DATE_ADDED是现在，用覆盖表让它留在原图的日期
+     */
+    private void keepDisplayDays(Result result) {
+        if (result.originals.isEmpty()) {
+            return;
+        }
+        PhotoManager photoManager = new PhotoManager(context);
+        Map<Long, Long> dayByNewId = new HashMap<>();
+        List<MediaJobQueue.Job> jobs = new ArrayList<>();
+        for (Photo original : result.originals) {
+            long newId = result.compactedIds.get(original.getId());
+            long day = photoManager.getDisplayEpochDay(original);
+            dayByNewId.put(newId, day);
+            jobs.add(MediaJobQueue.Job.setDisplayDay(newId, day));
+        }
+        MediaJobQueue.getInstance(context).enqueue(jobs);
+
+        List<Photo> compacted = photoManager.getPhotosByIds(new ArrayList<>(dayByNewId.keySet()));
+        MediaCatalog.getInstance(context).putAll(compacted);
+        MediaIndex index = MediaIndex.getInstance(context);
+        for (Photo photo : compacted) {
+            index.put(photo, dayByNewId.get(photo.getId()));
+        }
+    }
+
+    private static String compactedName(String name, int format) {
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return base + (format == FORMAT_WEBP ? ".webp" : ".jpg");
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat compressFormat(int format) {
+        if (format == FORMAT_JPEG) {
+            return Bitmap.CompressFormat.JPEG;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return Bitmap.CompressFormat.WEBP_LOSSY;
+        }
+        // Android 11以下 quality < 100 时即为有损
+        return Bitmap.CompressFormat.WEBP;
+    }
+
+    private static int toPermits(long bytes) {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, bytes / 1024));
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.photogallery;
+
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+/**
+ * 拖动进度条时合并跳转请求
+ * 拖动中每帧最多发出一次跳转，并且上一次跳转完成前不发新的（只保留最新的目标位置），
+ * 拖动中跳到最近的关键帧，松手后再精确跳转一次
+ */
+public class ScrubController implements Choreographer.FrameCallback {
+    // 跳转完成回调没有到达时（例如切换了视频），最多等这么久再发下一次
+    private static final long SEEK_TIMEOUT_MS = 300;
+
+    public interface SeekTarget {
+        /**
+         * @param exact true 精确跳转，false 跳到最近的关键帧
+         */
+        void seekTo(int positionMs, boolean exact);
+    }
+
+    private final SeekTarget target;
+    private boolean scrubbing = false;
+    private boolean frameScheduled = false;
+    private int pendingPosition = -1;
+    private long seekIssuedAt = 0;
+    private boolean seekInFlight = false;
+
+    public ScrubController(SeekTarget target) {
+        this.target = target;
+    }
+
+    public boolean isScrubbing() {
+        return scrubbing;
+    }
+
+    public void startScrub() {
+        scrubbing = true;
+    }
+
+    /**
+     * 拖动中的新位置，只记录，下一帧再处理
+     */
+    public void scrubTo(int positionMs) {
+        pendingPosition = positionMs;
+        if (!frameScheduled) {
+            frameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * 松手：丢弃未处理的位置，精确跳转到最终位置
+     */
+    public void endScrub(int positionMs) {
+        scrubbing = false;
+        pendingPosition = -1;
+        if (frameScheduled) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            frameScheduled = false;
+        }
+        issueSeek(positionMs, true);
+    }
+
+    /**
+     * 播放器跳转完成时调用
+     */
+    public void onSeekComplete() {
+        seekInFlight = false;
+        if (pendingPosition >= 0 && !frameScheduled) {
+            frameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    public void cancel() {
+        scrubbing = false;
+        pendingPosition = -1;
+        seekInFlight = false;
+        if (frameScheduled) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            frameScheduled = false;
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        if (pendingPosition < 0) {
+            return;
+        }
+        if (seekInFlight && SystemClock.uptimeMillis() - seekIssuedAt < SEEK_TIMEOUT_MS) {
+            // 上一次还没完成，完成后再处理最新位置
+            return;
+        }
+        int position = pendingPosition;
+        pendingPosition = -1;
+        issueSeek(position, false);
+    }
+
+    private void issueSeek(int positionMs, boolean exact) {
+        seekInFlight = true;
+        seekIssuedAt = SystemClock.uptimeMillis();
+        target.seekTo(positionMs, exact);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.photogallery;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按显示日期分组的位置索引（用于快速滚动和分组标题）
+ * 列表按显示日期倒序，同一天的媒体位置连续；每个分组只保存起始位置和日期，
+ * 位置 -> 分组查预先计算的表，O(1)
+ */
+public class SectionIndex {
+    // 每个分组第一项的位置（升序）
+    private final int[] sectionStarts;
+    // 每个分组的日期（epoch-day，降序）
+    private final long[] sectionDays;
+    // 位置 -> 分组
+    private final int[] sectionByPosition;
+    private final int itemCount;
+
+    private SectionIndex(int[] sectionStarts, long[] sectionDays, int itemCount) {
+        this.sectionStarts = sectionStarts;
+        this.sectionDays = sectionDays;
+        this.itemCount = itemCount;
+        this.sectionByPosition = new int[itemCount];
+        for (int section = 0; section < sectionStarts.length; section++) {
+            int end = section + 1 < sectionStarts.length ? sectionStarts[section + 1] : itemCount;
+            Arrays.fill(sectionByPosition, sectionStarts[section], end, section);
+        }
+    }
+
+    /**
+     * 按媒体的显示日期分组，列表需要已经按显示日期倒序排列（见 sortByDisplayDay）
+     */
+    public static SectionIndex build(List<Photo> photos, PhotoManager photoManager) {
+        int[] starts = new int[16];
+        long[] days = new long[16];
+        int count = 0;
+        long previousDay = Long.MIN_VALUE;
+
+        for (int i = 0; i < photos.size(); i++) {
+            long day = photoManager.getDisplayEpochDay(photos.get(i));
+            if (i == 0 || day != previousDay) {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                    days = Arrays.copyOf(days, count * 2);
+                }
+                starts[count] = i;
+                days[count] = day;
+                count++;
+                previousDay = day;
+            }
+        }
+        return new SectionIndex(Arrays.copyOf(starts, count), Arrays.copyOf(days, count), photos.size());
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public int getSectionCount() {
+        return sectionStarts.length;
+    }
+
+    /**
+     * 按显示日期倒序排列（同一天内按DATE_ADDED倒序），使同一天的媒体位置连续
+     */
+    public static void sortByDisplayDay(List<Photo> photos, PhotoManager photoManager) {
+        Map<Long, Long> days = new HashMap<>(photos.size() * 2);
+        for (Photo photo : photos) {
+            days.put(photo.getId(), photoManager.getDisplayEpochDay(photo));
+        }
+        Collections.sort(photos, (p1, p2) -> {
+            int byDay = Long.compare(days.get(p2.getId()), days.get(p1.getId()));
+            return byDay != 0 ? byDay : Long.compare(p2.getDateAdded(), p1.getDateAdded());
+        });
+    }
+
+    /**
+     * 位置所在的分组，查表O(1)
+     */
+    public int getSectionForPosition(int position) {
+        if (position < 0 || position >= itemCount) {
+            return -1;
+        }
+        return sectionByPosition[position];
+    }
+
+    /**
+     * 位置是否是分组的第一项
+     */
+    public boolean isSectionStart(int position) {
+        int section = getSectionForPosition(position);
+        return section >= 0 && sectionStarts[section] == position;
+    }
+
+    /**
+     * 分组第一项的位置
+     */
+    public int getPositionForSection(int section) {
+        return sectionStarts[section];
+    }
+
+    public long getDayForSection(int section) {
+        return sectionDays[section];
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.photogallery;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 逐行写出PNG（8位真彩色，不透明），内存中只保留当前行和上一行
+ * Bitmap.compress 需要整张位图，拼接很长的截图时改用它按条带写出
+ * 每行使用 Up 过滤（截图中相邻行大多相同，过滤后几乎全是0，压缩率很高），压缩数据攒满一块写一个IDAT
+ */
+class StreamingPngWriter {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int IDAT_SIZE = 64 * 1024;
+    private static final byte FILTER_UP = 2;
+
+    private final OutputStream out;
+    private final int width;
+    private final int height;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final CRC32 crc = new CRC32();
+    private byte[] current;
+    private byte[] previous;
+    // 过滤类型 + 过滤后的一行
+    private final byte[] filtered;
+    private final byte[] idat = new byte[IDAT_SIZE];
+    private int idatLength = 0;
+    private int rowsWritten = 0;
+
+    StreamingPngWriter(OutputStream out, int width, int height) throws IOException {
+        this.out = out;
+        this.width = width;
+        this.height = height;
+        current = new byte[width * 3];
+        previous = new byte[width * 3];
+        filtered = new byte[1 + width * 3];
+
+        out.write(SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8;  // 位深
+        header[9] = 2;  // 真彩色
+        header[10] = 0; // 压缩方式
+        header[11] = 0; // 过滤方式
+        header[12] = 0; // 不隔行
+        writeChunk("IHDR", header, header.length);
+    }
+
+    /**
+     * 写入一行像素（ARGB，透明度被忽略）
+     */
+    void writeRow(int[] pixels) throws IOException {
+        if (rowsWritten >= height) {
+            throw new IOException("rows exceed height " + height);
+        }
+        for (int x = 0, i = 0; x < width; x++) {
+            int color = pixels[x];
+            current[i++] = (byte) (color >> 16);
+            current[i++] = (byte) (color >> 8);
+            current[i++] = (byte) color;
+        }
+        // 第一行的上一行按全0处理，与PNG规范一致
+        filtered[0] = FILTER_UP;
+        for (int i = 0; i < current.length; i++) {
+            filtered[i + 1] = (byte) (current[i] - previous[i]);
+        }
+        deflater.setInput(filtered);
+        while (!deflater.needsInput()) {
+            deflate();
+        }
+
+        byte[] swap = previous;
+        previous = current;
+        current = swap;
+        rowsWritten++;
+    }
+
+    /**
+     * 写完所有行后调用，不关闭输出流
+     */
+    void finish() throws IOException {
+        if (rowsWritten != height) {
+            throw new IOException("wrote " + rowsWritten + " rows, expected " + height);
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            deflate();
+        }
+        if (idatLength > 0) {
+            writeChunk("IDAT", idat, idatLength);
+            idatLength = 0;
+        }
+        writeChunk("IEND", idat, 0);
+        deflater.end();
+    }
+
+    private void deflate() throws IOException {
+        idatLength += deflater.deflate(idat, idatLength, idat.length - idatLength);
+        if (idatLength == idat.length) {
+            writeChunk("IDAT", idat, idatLength);
+            idatLength = 0;
+        }
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        byte[] lengthBytes = new byte[4];
+        putInt(lengthBytes, 0, length);
+        out.write(lengthBytes);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+
+        crc.reset();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        byte[] crcBytes = new byte[4];
+        putInt(crcBytes, 0, (int) crc.getValue());
+        out.write(crcBytes);
+    }
+
+    private static void putInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+}
@@ -3,6 +3,7 @@ package com.example.photogallery;
 import android.content.Context;
 import android.graphics.Matrix;
 import android.graphics.PointF;
+import android.graphics.drawable.ShapeDrawable;
 import android.util.AttributeSet;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
@@ -15,6 +16,8 @@ public class TouchImageView extends AppCompatImageView {
     private static final int NONE = 0;
     private static final int DRAG = 1;
     private static final int ZOOM = 2;
+    // 解码前占位块的颜色
+    private static final int PLACEHOLDER_COLOR = 0xFF202020;
     private int mode = NONE;
 
     private PointF last = new PointF();
@@ -168,6 +171,16 @@ public class TouchImageView extends AppCompatImageView {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
         width = MeasureSpec.getSize(widthMeasureSpec);
         height = MeasureSpec.getSize(heightMeasureSpec);
+        fitToWidth();
+    }
+
+    /**
+     * 按宽度适配、顶部对齐；图片尺寸还不知道时不设置矩阵
+     */
+    private void fitToWidth() {
+        if (width == 0 || bmWidth == 0 || bmHeight == 0) {
+            return;
+        }
 
         // Fit width to screen, align to top
         float scale;
@@ -277,7 +290,34 @@ public class TouchImageView extends AppCompatImageView {
     }
 
     public void setImageBitmap(int bmWidth, int bmHeight) {
+        if (this.bmWidth == bmWidth && this.bmHeight == bmHeight) {
+            return;
+        }
+        if (this.bmWidth > 0 && this.bmHeight > 0
+                && Math.abs(this.bmWidth - bmWidth) <= 1 && Math.abs(this.bmHeight - bmHeight) <= 1) {
+            // 解码器对采样后的尺寸取整和解码计划差一个像素：只换算矩阵，保留当前的缩放和平移
+            matrix.preScale(this.bmWidth / bmWidth, this.bmHeight / bmHeight);
+            this.bmWidth = bmWidth;
+            this.bmHeight = bmHeight;
+            setImageMatrix(matrix);
+            return;
+        }
         this.bmWidth = bmWidth;
         this.bmHeight = bmHeight;
+        // 尺寸变了（占位图换成解码结果，或者复用给另一张图），重新适配
+        saveScale = 1f;
+        fitToWidth();
+    }
+
+    /**
+     * 解码前按解码后的尺寸显示一个同样大小的占位块，矩阵和滚动范围提前就绪
+     */
+    public void setPlaceholderSize(int width, int height) {
+        ShapeDrawable placeholder = new ShapeDrawable();
+        placeholder.getPaint().setColor(PLACEHOLDER_COLOR);
+        placeholder.setIntrinsicWidth(width);
+        placeholder.setIntrinsicHeight(height);
+        setImageBitmap(width, height);
+        setImageDrawable(placeholder);
     }
 }
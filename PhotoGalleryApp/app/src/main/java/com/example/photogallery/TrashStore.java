@@ -0,0 +1,133 @@
+package com.example.photogallery;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.provider.MediaStore;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 记录本应用移到系统回收站的媒体（媒体ID -> 媒体类型和移入时间）
+ * 用于跨会话撤销删除：下次启动后仍然可以从回收站恢复
+ * 系统会在30天后自动清空回收站，超过期限的记录自动丢弃
+ */
+public class TrashStore {
+    private static final String TAG = "TrashStore";
+    private static final String PREFS_NAME = "TrashedMedia";
+    private static final long RETENTION_MILLIS = 30L * 24 * 60 * 60 * 1000;
+
+    private static TrashStore instance;
+
+    private final SharedPreferences prefs;
+    private final ContentResolver resolver;
+
+    private TrashStore(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        resolver = context.getApplicationContext().getContentResolver();
+    }
+
+    public static synchronized TrashStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new TrashStore(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 记录已移到回收站的媒体
+     */
+    public synchronized void addAll(List<Photo> photos) {
+        long now = System.currentTimeMillis();
+        SharedPreferences.Editor editor = prefs.edit();
+        for (Photo photo : photos) {
+            editor.putString(String.valueOf(photo.getId()), photo.getMediaType() + "," + now);
+        }
+        editor.apply();
+    }
+
+    /**
+     * 移除记录（已恢复或已被系统清除）
+     */
+    public synchronized void removeAll(List<Long> ids) {
+        SharedPreferences.Editor editor = prefs.edit();
+        for (long id : ids) {
+            editor.remove(String.valueOf(id));
+        }
+        editor.apply();
+    }
+
+    /**
+     * 获取仍可恢复的媒体（只有ID和类型）
+     * 会查询MediaStore确认文件仍在回收站中，需要在后台线程调用
+     */
+    public synchronized List<Photo> getTrashed() {
+        List<Photo> photos = new ArrayList<>();
+        List<Long> expired = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            try {
+                long id = Long.parseLong(entry.getKey());
+                String[] parts = String.valueOf(entry.getValue()).split(",");
+                int mediaType = Integer.parseInt(parts[0]);
+                long trashedAt = Long.parseLong(parts[1]);
+                if (now - trashedAt > RETENTION_MILLIS) {
+                    expired.add(id);
+                } else {
+                    photos.add(new Photo(id, null, null, 0, 0, mediaType, 0));
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                // 忽略无效的记录
+            }
+        }
+
+        // 已被系统清除或在其他应用中恢复的文件不再显示
+        Set<Long> stillTrashed = queryTrashedIds(photos);
+        List<Photo> restorable = new ArrayList<>();
+        for (Photo photo : photos) {
+            if (stillTrashed.contains(photo.getId())) {
+                restorable.add(photo);
+            } else {
+                expired.add(photo.getId());
+            }
+        }
+
+        if (!expired.isEmpty()) {
+            removeAll(expired);
+        }
+        return restorable;
+    }
+
+    private Set<Long> queryTrashedIds(List<Photo> photos) {
+        Set<Long> ids = new HashSet<>();
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.R || photos.isEmpty()) {
+            return ids;
+        }
+
+        Bundle args = new Bundle();
+        args.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_ONLY);
+        String[] projection = {MediaStore.MediaColumns._ID};
+        Uri[] collections = {MediaStore.Images.Media.EXTERNAL_CONTENT_URI, MediaStore.Video.Media.EXTERNAL_CONTENT_URI};
+        for (Uri collection : collections) {
+            try (Cursor cursor = resolver.query(collection, projection, args, null)) {
+                if (cursor != null) {
+                    while (cursor.moveToNext()) {
+                        ids.add(cursor.getLong(0));
+                    }
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "查询回收站失败", e);
+            }
+        }
+        return ids;
+    }
+}
@@ -12,15 +12,16 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.provider.MediaStore;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.TextureView;
 import android.view.View;
 import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
-import android.widget.MediaController;
 import android.widget.SeekBar;
 import android.widget.TextView;
 import android.widget.Toast;
-import android.widget.VideoView;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.IntentSenderRequest;
 import androidx.activity.result.contract.ActivityResultContracts;
@@ -31,7 +32,13 @@ import java.util.Collections;
 import java.util.Locale;
 
 public class VideoPlayerActivity extends AppCompatActivity {
-    private VideoView videoView;
+    // 横向滑动超过这个距离（dp）切换视频
+    private static final int SWIPE_MIN_DISTANCE_DP = 60;
+
+    private View layoutVideoSurfaces;
+    private VideoPlaylistPlayer player;
+    private ScrubController scrubController;
+    private FilmstripView filmstripView, filmstripPreview;
     private SeekBar seekBar;
     private TextView textViewCurrentTime, textViewTotalTime, textViewVideoInfo, textViewPageInfo;
     private Button buttonPlayPause, buttonSystemPlayer, buttonAddToThreeDaysLater, buttonDelete;
@@ -45,9 +52,10 @@ public class VideoPlayerActivity extends AppCompatActivity {
     private Handler handler = new Handler(Looper.getMainLooper());
     private boolean isPlaying = false;
     private boolean controlsVisible = true;
+    private final Runnable progressUpdater = this::updateProgress;
 
     private ActivityResultLauncher<IntentSenderRequest> deleteRequestLauncher;
-    private ActivityResultLauncher<IntentSenderRequest> delayDeleteRequestLauncher;
+    private PhotoManager photoManager;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -55,7 +63,9 @@ public class VideoPlayerActivity extends AppCompatActivity {
         setContentView(R.layout.activity_video_player);
 
         // 初始化视图
-        videoView = findViewById(R.id.videoView);
+        layoutVideoSurfaces = findViewById(R.id.layoutVideoSurfaces);
+        filmstripView = findViewById(R.id.filmstripView);
+        filmstripPreview = findViewById(R.id.filmstripPreview);
         seekBar = findViewById(R.id.seekBar);
         textViewCurrentTime = findViewById(R.id.textViewCurrentTime);
         textViewTotalTime = findViewById(R.id.textViewTotalTime);
@@ -87,17 +97,7 @@ public class VideoPlayerActivity extends AppCompatActivity {
                 }
         );
 
-        // 设置延迟操作删除请求启动器
-        delayDeleteRequestLauncher = registerForActivityResult(
-                new ActivityResultContracts.StartIntentSenderForResult(),
-                result -> {
-                    if (result.getResultCode() == Activity.RESULT_OK) {
-                        performDelayCleanup();
-                    } else {
-                        Toast.makeText(this, "延迟操作已取消", Toast.LENGTH_SHORT).show();
-                    }
-                }
-        );
+        photoManager = new PhotoManager(this);
 
         // 设置按钮监听器
         buttonPlayPause.setOnClickListener(v -> togglePlayPause());
@@ -105,24 +105,48 @@ public class VideoPlayerActivity extends AppCompatActivity {
         buttonAddToThreeDaysLater.setOnClickListener(v -> addToThreeDaysLater());
         buttonDelete.setOnClickListener(v -> deleteCurrentVideo());
 
-        // 点击视频切换控制栏显示/隐藏
-        videoView.setOnClickListener(v -> toggleControls());
+        // 点击视频切换控制栏显示/隐藏，左右滑动切换视频
+        setupGestures();
 
-        // SeekBar进度控制
+        // SeekBar进度控制：拖动中的跳转按帧合并，松手后精确跳转
+        scrubController = new ScrubController((positionMs, exact) -> {
+            if (player != null) {
+                player.seekTo(positionMs, exact);
+            }
+        });
         seekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
             @Override
             public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
                 if (fromUser) {
-                    videoView.seekTo(progress);
+                    textViewCurrentTime.setText(formatTime(progress));
+                    if (scrubController.isScrubbing() && filmstripPreview.hasSprite()) {
+                        // 有胶片时拖动中只显示预览帧，不让播放器解码，松手后再跳转
+                        showScrubPreview(progress);
+                    } else if (scrubController.isScrubbing()) {
+                        scrubController.scrubTo(progress);
+                    } else {
+                        // 点击进度条（不是拖动）直接精确跳转
+                        player.seekTo(progress, true);
+                    }
                 }
             }
 
             @Override
             public void onStartTrackingTouch(SeekBar seekBar) {
+                // 拖动期间暂停进度刷新，避免和手指位置互相覆盖
+                scrubController.startScrub();
+                handler.removeCallbacks(progressUpdater);
+                if (filmstripPreview.hasSprite()) {
+                    showScrubPreview(seekBar.getProgress());
+                    filmstripPreview.setVisibility(View.VISIBLE);
+                }
             }
 
             @Override
             public void onStopTrackingTouch(SeekBar seekBar) {
+                filmstripPreview.setVisibility(View.GONE);
+                scrubController.endScrub(seekBar.getProgress());
+                updateProgress();
             }
         });
 
@@ -137,6 +161,58 @@ public class VideoPlayerActivity extends AppCompatActivity {
             return;
         }
 
+        if (player == null) {
+            TextureView[] surfaces = {
+                    findViewById(R.id.textureVideo0),
+                    findViewById(R.id.textureVideo1),
+                    findViewById(R.id.textureVideo2)
+            };
+            player = new VideoPlaylistPlayer(this, surfaces, new VideoPlaylistPlayer.Listener() {
+                @Override
+                public void onVideoChanged(int index) {
+                    scrubController.cancel();
+                    currentPosition = index;
+                    showVideoInfo();
+                    loadFilmstrip();
+                }
+
+                @Override
+                public void onDurationReady(int durationMs) {
+                    seekBar.setMax(durationMs);
+                    textViewTotalTime.setText(formatTime(durationMs));
+                }
+
+                @Override
+                public void onPlaybackStateChanged(boolean playing) {
+                    isPlaying = playing;
+                    updatePlayPauseButton();
+                    updateProgress();
+                }
+
+                @Override
+                public void onError(int what, int extra) {
+                    String errorMsg = "视频播放出错";
+                    if (what == MediaPlayer.MEDIA_ERROR_UNKNOWN) {
+                        errorMsg += " (未知错误)";
+                    } else if (what == MediaPlayer.MEDIA_ERROR_SERVER_DIED) {
+                        errorMsg += " (服务器错误)";
+                    }
+                    Toast.makeText(VideoPlayerActivity.this, errorMsg + "\nWhat: " + what + " Extra: " + extra,
+                            Toast.LENGTH_LONG).show();
+                }
+
+                @Override
+                public void onSeekComplete() {
+                    scrubController.onSeekComplete();
+                }
+            });
+        }
+
+        // 列表变化（删除、移到3天后）时也走这里，相邻视频已经准备好的播放器会被复用
+        player.setPlaylist(videos, currentPosition);
+    }
+
+    private void showVideoInfo() {
         Photo currentVideo = videos.get(currentPosition);
 
         // 设置视频信息
@@ -144,84 +220,88 @@ public class VideoPlayerActivity extends AppCompatActivity {
         textViewPageInfo.setText(String.format(Locale.getDefault(), "%d / %d",
                 currentPosition + 1, videos.size()));
 
-        // 停止之前的播放
-        if (videoView.isPlaying()) {
-            videoView.stopPlayback();
-        }
-
         // 重置状态
-        isPlaying = false;
         seekBar.setProgress(0);
         textViewCurrentTime.setText("00:00");
         textViewTotalTime.setText("00:00");
 
-        try {
-            // 设置视频URI
-            Uri videoUri = currentVideo.getUri();
-            if (videoUri == null) {
-                Toast.makeText(this, "视频URI为空，尝试使用路径", Toast.LENGTH_SHORT).show();
-                // 尝试使用路径
-                String path = currentVideo.getPath();
-                if (path != null && !path.isEmpty()) {
-                    videoUri = Uri.parse(path);
-                } else {
-                    Toast.makeText(this, "无法获取视频路径", Toast.LENGTH_SHORT).show();
-                    return;
-                }
-            }
-
-            android.util.Log.d("VideoPlayer", "Playing video: " + currentVideo.getName());
-            android.util.Log.d("VideoPlayer", "URI: " + videoUri);
-            android.util.Log.d("VideoPlayer", "Path: " + currentVideo.getPath());
-
-            videoView.setVideoURI(videoUri);
-
-            // 错误监听
-            videoView.setOnErrorListener((mp, what, extra) -> {
-                String errorMsg = "视频播放出错";
-                if (what == MediaPlayer.MEDIA_ERROR_UNKNOWN) {
-                    errorMsg += " (未知错误)";
-                } else if (what == MediaPlayer.MEDIA_ERROR_SERVER_DIED) {
-                    errorMsg += " (服务器错误)";
-                }
-                Toast.makeText(VideoPlayerActivity.this, errorMsg + "\nWhat: " + what + " Extra: " + extra,
-                    Toast.LENGTH_LONG).show();
-                return true;
-            });
+        android.util.Log.d("VideoPlayer", "Playing video: " + currentVideo.getName());
+    }
 
-            // 准备完成监听
-            videoView.setOnPreparedListener(mp -> {
-                int duration = mp.getDuration();
-                seekBar.setMax(duration);
-                textViewTotalTime.setText(formatTime(duration));
+    /**
+     * 显示当前视频的缩略图胶片（有缓存时立即显示，否则在后台生成）
+     */
+    private void loadFilmstrip() {
+        filmstripView.setSprite(null, 0);
+        filmstripPreview.setSprite(null, 0);
+        filmstripView.setVisibility(View.GONE);
+        filmstripPreview.setVisibility(View.GONE);
 
-                // 自动播放
-                videoView.start();
-                isPlaying = true;
-                updatePlayPauseButton();
+        Photo currentVideo = videos.get(currentPosition);
+        FilmstripCache.getInstance(this).load(currentVideo, (video, sprite) -> {
+            if (sprite == null || isDestroyed() || currentPosition >= videos.size()
+                    || videos.get(currentPosition).getId() != video.getId()) {
+                return;
+            }
+            filmstripView.setSprite(sprite, FilmstripCache.FRAME_COUNT);
+            filmstripView.setVisibility(View.VISIBLE);
+            filmstripPreview.setSprite(sprite, FilmstripCache.FRAME_COUNT);
+            // 预览框按帧的比例设置高度
+            int frameWidth = sprite.getWidth() / FilmstripCache.FRAME_COUNT;
+            filmstripPreview.getLayoutParams().height =
+                    filmstripPreview.getLayoutParams().width * sprite.getHeight() / frameWidth;
+            filmstripPreview.requestLayout();
+        });
+    }
 
-                // 开始更新进度
-                updateProgress();
+    /**
+     * 预览帧跟随进度条的滑块位置
+     */
+    private void showScrubPreview(int progress) {
+        float fraction = seekBar.getMax() > 0 ? (float) progress / seekBar.getMax() : 0;
+        filmstripPreview.setFrame(fraction);
+
+        int trackWidth = seekBar.getWidth() - seekBar.getPaddingLeft() - seekBar.getPaddingRight();
+        float thumbX = bottomControlBar.getLeft() + seekBar.getLeft() + seekBar.getPaddingLeft()
+                + trackWidth * fraction;
+        View root = (View) filmstripPreview.getParent();
+        float maxX = root.getWidth() - filmstripPreview.getWidth();
+        filmstripPreview.setTranslationX(Math.max(0, Math.min(maxX, thumbX - filmstripPreview.getWidth() / 2f)));
+    }
 
-                Toast.makeText(VideoPlayerActivity.this, "开始播放", Toast.LENGTH_SHORT).show();
-            });
+    private void setupGestures() {
+        float swipeMinDistance = SWIPE_MIN_DISTANCE_DP * getResources().getDisplayMetrics().density;
+        GestureDetector gestureDetector = new GestureDetector(this, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(MotionEvent e) {
+                return true;
+            }
 
-            // 播放完成监听
-            videoView.setOnCompletionListener(mp -> {
-                isPlaying = false;
-                updatePlayPauseButton();
+            @Override
+            public boolean onSingleTapConfirmed(MotionEvent e) {
+                toggleControls();
+                return true;
+            }
 
-                // 播放下一个视频
-                if (currentPosition < videos.size() - 1) {
-                    currentPosition++;
-                    loadVideo();
+            @Override
+            public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
+                if (e1 == null) {
+                    return false;
                 }
-            });
-
-        } catch (Exception e) {
-            Toast.makeText(this, "加载视频失败: " + e.getMessage(), Toast.LENGTH_LONG).show();
-            e.printStackTrace();
-        }
+                float dx = e2.getX() - e1.getX();
+                float dy = e2.getY() - e1.getY();
+                if (Math.abs(dx) < swipeMinDistance || Math.abs(dx) < Math.abs(dy)) {
+                    return false;
+                }
+                boolean moved = dx < 0 ? player.next() : player.previous();
+                if (!moved) {
+                    Toast.makeText(VideoPlayerActivity.this,
+                            dx < 0 ? "已经是最后一个" : "已经是第一个", Toast.LENGTH_SHORT).show();
+                }
+                return true;
+            }
+        });
+        layoutVideoSurfaces.setOnTouchListener((v, event) -> gestureDetector.onTouchEvent(event));
     }
 
     private void openInSystemPlayer() {
@@ -249,14 +329,10 @@ public class VideoPlayerActivity extends AppCompatActivity {
 
     private void togglePlayPause() {
         if (isPlaying) {
-            videoView.pause();
-            isPlaying = false;
+            player.pause();
         } else {
-            videoView.start();
-            isPlaying = true;
-            updateProgress();
+            player.play();
         }
-        updatePlayPauseButton();
         showPlayPauseIcon();
     }
 
@@ -281,15 +357,18 @@ public class VideoPlayerActivity extends AppCompatActivity {
             bottomControlBar.setVisibility(View.VISIBLE);
         }
         controlsVisible = !controlsVisible;
+        // 控制栏隐藏时不刷新进度，显示时立即刷新一次并恢复
+        updateProgress();
     }
 
     private void updateProgress() {
-        if (isPlaying && videoView != null) {
-            int currentPos = videoView.getCurrentPosition();
+        handler.removeCallbacks(progressUpdater);
+        if (isPlaying && player != null && controlsVisible && !scrubController.isScrubbing()) {
+            int currentPos = player.getCurrentPosition();
             seekBar.setProgress(currentPos);
             textViewCurrentTime.setText(formatTime(currentPos));
 
-            handler.postDelayed(this::updateProgress, 100);
+            handler.postDelayed(progressUpdater, 100);
         }
     }
 
@@ -306,100 +385,11 @@ public class VideoPlayerActivity extends AppCompatActivity {
         android.util.Log.d("VideoPlayer", "=== 开始3天后操作 ===");
         android.util.Log.d("VideoPlayer", "视频名称: " + currentVideo.getName());
         android.util.Log.d("VideoPlayer", "视频ID: " + currentVideo.getId());
-        android.util.Log.d("VideoPlayer", "视频URI: " + currentVideo.getUri());
-        android.util.Log.d("VideoPlayer", "视频路径: " + currentVideo.getPath());
-
-        // 确保有有效的URI
-        Uri videoUri = currentVideo.getUri();
-        if (videoUri == null) {
-            // 使用视频ID构建content:// URI
-            videoUri = ContentUris.withAppendedId(
-                    MediaStore.Video.Media.EXTERNAL_CONTENT_URI,
-                    currentVideo.getId()
-            );
-            android.util.Log.d("VideoPlayer", "URI为空，使用ID构建: " + videoUri);
-        }
-
-        final Uri finalVideoUri = videoUri;
-        Toast.makeText(this, "正在复制文件...", Toast.LENGTH_SHORT).show();
-
-        new Thread(() -> {
-            FileOperationHelper helper = new FileOperationHelper(this);
-
-            // 复制视频文件到 Movies/ 目录（新文件会有新的 DATE_ADDED）
-            // 应用会根据 DATE_ADDED + 3天自动将其归类到正确的日期文件夹
-            android.util.Log.d("VideoPlayer", "开始复制视频文件...");
-            android.util.Log.d("VideoPlayer", "使用URI: " + finalVideoUri);
-            long newId = helper.copyVideoFile(finalVideoUri, currentVideo.getName());
-            android.util.Log.d("VideoPlayer", "复制结果 newId: " + newId);
-
-            runOnUiThread(() -> {
-                if (newId != -1) {
-                    android.util.Log.d("VideoPlayer", "复制成功，开始删除原文件...");
-                    // 直接删除原文件
-                    deleteVideoFromMediaStore(currentVideo, () -> {
-                        android.util.Log.d("VideoPlayer", "删除原文件成功，执行清理...");
-                        performDelayCleanup();
-                        Toast.makeText(VideoPlayerActivity.this, "已移到3天后", Toast.LENGTH_SHORT).show();
-                    });
-                } else {
-                    android.util.Log.e("VideoPlayer", "复制文件失败!");
-                    Toast.makeText(VideoPlayerActivity.this, "复制文件失败", Toast.LENGTH_SHORT).show();
-                }
-            });
-        }).start();
-    }
-
-    /**
-     * 从MediaStore中删除视频
-     */
-    private void deleteVideoFromMediaStore(Photo video, Runnable onSuccess) {
-        android.util.Log.d("VideoPlayer", "=== 删除原视频 ===");
-        android.util.Log.d("VideoPlayer", "视频ID: " + video.getId());
-
-        Uri videoUri = ContentUris.withAppendedId(
-                MediaStore.Video.Media.EXTERNAL_CONTENT_URI,
-                video.getId()
-        );
-        android.util.Log.d("VideoPlayer", "删除URI: " + videoUri);
 
-        ContentResolver resolver = getContentResolver();
-
-        try {
-            android.util.Log.d("VideoPlayer", "尝试直接删除...");
-            int deletedRows = resolver.delete(videoUri, null, null);
-            android.util.Log.d("VideoPlayer", "删除结果: " + deletedRows + " 行");
-            if (deletedRows > 0) {
-                onSuccess.run();
-            } else {
-                android.util.Log.e("VideoPlayer", "删除失败，返回0行");
-                Toast.makeText(this, "删除失败", Toast.LENGTH_SHORT).show();
-            }
-        } catch (SecurityException e) {
-            android.util.Log.w("VideoPlayer", "SecurityException，需要用户确认: " + e.getMessage());
-            // Android 10+ 需要用户确认
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-                try {
-                    PendingIntent pendingIntent = MediaStore.createDeleteRequest(
-                            resolver,
-                            Collections.singletonList(videoUri)
-                    );
-                    android.util.Log.d("VideoPlayer", "启动删除确认对话框...");
-                    delayDeleteRequestLauncher.launch(
-                            new IntentSenderRequest.Builder(pendingIntent.getIntentSender()).build()
-                    );
-                } catch (Exception ex) {
-                    android.util.Log.e("VideoPlayer", "创建删除请求失败: " + ex.getMessage(), ex);
-                    Toast.makeText(this, "删除失败: " + ex.getMessage(), Toast.LENGTH_SHORT).show();
-                }
-            } else {
-                android.util.Log.e("VideoPlayer", "删除失败: " + e.getMessage());
-                Toast.makeText(this, "删除失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-            }
-        } catch (Exception e) {
-            android.util.Log.e("VideoPlayer", "删除时发生意外错误: " + e.getMessage(), e);
-            Toast.makeText(this, "删除失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-        }
+        // 只修改显示日期覆盖表，不复制文件也不需要删除原文件
+        photoManager.postpone(currentVideo, PhotoManager.DELAY_DAYS);
+        performDelayCleanup();
+        Toast.makeText(this, "已移到3天后", Toast.LENGTH_SHORT).show();
     }
 
     private void deleteCurrentVideo() {
@@ -475,6 +465,9 @@ public class VideoPlayerActivity extends AppCompatActivity {
     }
 
     private void performDeleteCleanup() {
+        // 永久删除：文件夹列表使用的索引同步更新，媒体目录、封面、哈希和显示日期覆盖一起清除
+        BulkMediaMutator.forgetDeleted(this,
+                Collections.singletonList(videos.get(currentPosition).getId()));
         performDelayCleanup();
     }
 
@@ -482,8 +475,7 @@ public class VideoPlayerActivity extends AppCompatActivity {
     protected void onPause() {
         super.onPause();
         if (isPlaying) {
-            videoView.pause();
-            isPlaying = false;
+            player.pause();
         }
     }
 
@@ -491,8 +483,9 @@ public class VideoPlayerActivity extends AppCompatActivity {
     protected void onDestroy() {
         super.onDestroy();
         handler.removeCallbacksAndMessages(null);
-        if (videoView != null) {
-            videoView.stopPlayback();
+        scrubController.cancel();
+        if (player != null) {
+            player.release();
         }
     }
 }
@@ -0,0 +1,420 @@
+package com.example.photogallery;
+
+import android.content.Context;
+import android.graphics.Matrix;
+import android.graphics.SurfaceTexture;
+import android.media.MediaPlayer;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+import android.view.Surface;
+import android.view.TextureView;
+import androidx.annotation.NonNull;
+import java.io.File;
+import java.util.List;
+
+/**
+ * 视频列表播放器：当前、下一个和上一个视频各占一个 MediaPlayer 和一个叠放的 TextureView
+ * 相邻视频提前准备好，下一个通过 setNextMediaPlayer 串接，播放结束时由系统直接接着播放，
+ * 切换时只交换可见的画面，没有重新准备造成的黑屏
+ * 播放器按媒体ID绑定，列表删除或移出项目后重新分配时，已经准备好的播放器会被复用
+ */
+public class VideoPlaylistPlayer {
+    private static final String TAG = "VideoPlaylistPlayer";
+
+    public interface Listener {
+        /**
+         * 当前视频变化（包括播放结束后自动切换）
+         */
+        void onVideoChanged(int index);
+
+        void onDurationReady(int durationMs);
+
+        void onPlaybackStateChanged(boolean playing);
+
+        void onError(int what, int extra);
+
+        /**
+         * 当前视频的一次跳转完成
+         */
+        void onSeekComplete();
+    }
+
+    /**
+     * 一个播放位：固定的 TextureView + 可复用的 MediaPlayer
+     */
+    private class Slot implements TextureView.SurfaceTextureListener {
+        final TextureView view;
+        MediaPlayer player;
+        Surface surface;
+        long mediaId = -1;
+        Photo photo;
+        boolean prepared = false;
+        // 加载或播放出错，播放器不能再使用
+        boolean error = false;
+        int videoWidth;
+        int videoHeight;
+
+        Slot(TextureView view) {
+            this.view = view;
+            view.setSurfaceTextureListener(this);
+            if (view.isAvailable()) {
+                surface = new Surface(view.getSurfaceTexture());
+            }
+        }
+
+        @Override
+        public void onSurfaceTextureAvailable(@NonNull SurfaceTexture texture, int width, int height) {
+            surface = new Surface(texture);
+            if (photo != null && !prepared) {
+                load(this, photo);
+            }
+        }
+
+        @Override
+        public void onSurfaceTextureSizeChanged(@NonNull SurfaceTexture texture, int width, int height) {
+            applyFitCenter(this);
+        }
+
+        @Override
+        public boolean onSurfaceTextureDestroyed(@NonNull SurfaceTexture texture) {
+            // 画面没有了，播放器也不能继续使用，重新可用时再准备
+            releasePlayer(this);
+            if (surface != null) {
+                surface.release();
+                surface = null;
+            }
+            return true;
+        }
+
+        @Override
+        public void onSurfaceTextureUpdated(@NonNull SurfaceTexture texture) {
+        }
+    }
+
+    private final Context context;
+    private final Listener listener;
+    private final Slot[] slots;
+    private List<Photo> videos;
+    private int currentIndex = -1;
+    private Slot current;
+    // 用户希望的播放状态（当前视频还没准备好时，准备好后按此决定是否开始）
+    private boolean playWhenReady = true;
+
+    /**
+     * @param views 三个叠放在同一位置的 TextureView
+     */
+    public VideoPlaylistPlayer(Context context, TextureView[] views, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.listener = listener;
+        slots = new Slot[views.length];
+        for (int i = 0; i < views.length; i++) {
+            slots[i] = new Slot(views[i]);
+        }
+    }
+
+    /**
+     * 设置播放列表并跳到指定位置；列表被修改（删除、移出）后也调用此方法，已准备好的播放器会被复用
+     */
+    public void setPlaylist(List<Photo> videos, int index) {
+        this.videos = videos;
+        moveTo(index, false);
+    }
+
+    public boolean next() {
+        if (videos == null || currentIndex + 1 >= videos.size()) {
+            return false;
+        }
+        moveTo(currentIndex + 1, false);
+        return true;
+    }
+
+    public boolean previous() {
+        if (videos == null || currentIndex <= 0) {
+            return false;
+        }
+        moveTo(currentIndex - 1, false);
+        return true;
+    }
+
+    public void play() {
+        playWhenReady = true;
+        if (current != null && current.prepared) {
+            current.player.start();
+            listener.onPlaybackStateChanged(true);
+        }
+    }
+
+    public void pause() {
+        playWhenReady = false;
+        if (current != null && current.prepared && current.player.isPlaying()) {
+            current.player.pause();
+        }
+        listener.onPlaybackStateChanged(false);
+    }
+
+    public boolean isPlaying() {
+        return current != null && current.prepared && current.player.isPlaying();
+    }
+
+    /**
+     * @param exact true 精确跳到指定位置（需要从关键帧解码到目标帧）；
+     *              false 跳到最近的关键帧，拖动进度条时使用，解码量小
+     */
+    public void seekTo(int positionMs, boolean exact) {
+        if (current == null || !current.prepared) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            current.player.seekTo(positionMs, exact ? MediaPlayer.SEEK_CLOSEST : MediaPlayer.SEEK_CLOSEST_SYNC);
+        } else {
+            current.player.seekTo(positionMs);
+        }
+    }
+
+    public int getCurrentPosition() {
+        return current != null && current.prepared ? current.player.getCurrentPosition() : 0;
+    }
+
+    public void release() {
+        for (Slot slot : slots) {
+            releasePlayer(slot);
+            slot.photo = null;
+            slot.mediaId = -1;
+        }
+        current = null;
+    }
+
+    /**
+     * 切换当前视频，并让三个播放位分别对应当前、下一个和上一个视频
+     *
+     * @param alreadyStarted 下一个播放器已经由系统接着开始播放（自动切换）
+     */
+    private void moveTo(int index, boolean alreadyStarted) {
+        if (videos == null || videos.isEmpty()) {
+            return;
+        }
+        index = Math.max(0, Math.min(videos.size() - 1, index));
+        Slot previousCurrent = current;
+        long previousMediaId = current != null ? current.mediaId : -1;
+        currentIndex = index;
+
+        Photo[] wanted = {
+                videos.get(index),
+                index + 1 < videos.size() ? videos.get(index + 1) : null,
+                index > 0 ? videos.get(index - 1) : null
+        };
+        Slot[] assigned = new Slot[wanted.length];
+        boolean[] used = new boolean[slots.length];
+
+        // 先复用已经绑定到同一个媒体的播放位
+        for (int w = 0; w < wanted.length; w++) {
+            if (wanted[w] == null) {
+                continue;
+            }
+            for (int s = 0; s < slots.length; s++) {
+                if (!used[s] && slots[s].mediaId == wanted[w].getId()) {
+                    assigned[w] = slots[s];
+                    used[s] = true;
+                    if (w == 0 && slots[s].error && slots[s] != current) {
+                        // 作为相邻视频准备时出错（例如解码器暂时不够用），变为当前时重新加载一次
+                        load(slots[s], wanted[w]);
+                    }
+                    break;
+                }
+            }
+        }
+        // 其余的播放位重新加载
+        for (int w = 0; w < wanted.length; w++) {
+            if (wanted[w] == null || assigned[w] != null) {
+                continue;
+            }
+            for (int s = 0; s < slots.length; s++) {
+                if (!used[s]) {
+                    assigned[w] = slots[s];
+                    used[s] = true;
+                    load(slots[s], wanted[w]);
+                    break;
+                }
+            }
+        }
+        for (int s = 0; s < slots.length; s++) {
+            if (!used[s]) {
+                releasePlayer(slots[s]);
+                slots[s].photo = null;
+                slots[s].mediaId = -1;
+            }
+        }
+
+        current = assigned[0];
+        for (Slot slot : slots) {
+            slot.view.setAlpha(slot == current ? 1f : 0f);
+            // 离开当前位置的播放器停下来，回到开头，解除串接
+            if (slot != current && slot.prepared) {
+                slot.player.setNextMediaPlayer(null);
+                if (slot.player.isPlaying()) {
+                    slot.player.pause();
+                }
+                if (slot == previousCurrent) {
+                    slot.player.seekTo(0);
+                }
+            }
+        }
+
+        if (current != previousCurrent || current.mediaId != previousMediaId) {
+            listener.onVideoChanged(index);
+            if (current.error) {
+                // 出错时还不是当前视频，没有报告过
+                listener.onError(MediaPlayer.MEDIA_ERROR_UNKNOWN, 0);
+            } else if (current.prepared) {
+                listener.onDurationReady(current.player.getDuration());
+                if (alreadyStarted) {
+                    listener.onPlaybackStateChanged(true);
+                } else if (playWhenReady) {
+                    current.player.start();
+                    listener.onPlaybackStateChanged(true);
+                } else {
+                    listener.onPlaybackStateChanged(false);
+                }
+            }
+        }
+        chainNext();
+    }
+
+    /**
+     * 当前和下一个都准备好时串接，当前播放结束后系统直接开始下一个
+     */
+    private void chainNext() {
+        if (current == null || !current.prepared) {
+            return;
+        }
+        Slot next = findSlot(currentIndex + 1);
+        current.player.setNextMediaPlayer(next != null && next.prepared ? next.player : null);
+    }
+
+    private Slot findSlot(int index) {
+        if (videos == null || index < 0 || index >= videos.size()) {
+            return null;
+        }
+        long id = videos.get(index).getId();
+        for (Slot slot : slots) {
+            if (slot.mediaId == id) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    private void load(Slot slot, Photo photo) {
+        releasePlayer(slot);
+        slot.photo = photo;
+        slot.mediaId = photo.getId();
+        if (slot.surface == null) {
+            // 画面还没准备好，onSurfaceTextureAvailable 时再加载
+            return;
+        }
+
+        MediaPlayer player = new MediaPlayer();
+        slot.player = player;
+        try {
+            player.setDataSource(context, resolveUri(photo));
+            player.setSurface(slot.surface);
+            player.setOnVideoSizeChangedListener((mp, width, height) -> {
+                slot.videoWidth = width;
+                slot.videoHeight = height;
+                applyFitCenter(slot);
+            });
+            player.setOnPreparedListener(mp -> onSlotPrepared(slot, mp));
+            player.setOnCompletionListener(mp -> onSlotCompleted(slot, mp));
+            player.setOnSeekCompleteListener(mp -> {
+                if (slot == current && mp == slot.player) {
+                    listener.onSeekComplete();
+                }
+            });
+            player.setOnErrorListener((mp, what, extra) -> {
+                Log.e(TAG, "播放出错: " + photo.getName() + " what=" + what + " extra=" + extra);
+                // 出错后的播放器不能再调用，也不能被串接
+                slot.prepared = false;
+                slot.error = true;
+                if (slot == current) {
+                    listener.onError(what, extra);
+                }
+                return true;
+            });
+            player.prepareAsync();
+        } catch (Exception e) {
+            Log.e(TAG, "加载视频失败: " + photo.getName(), e);
+            slot.error = true;
+            if (slot == current) {
+                listener.onError(MediaPlayer.MEDIA_ERROR_UNKNOWN, 0);
+            }
+        }
+    }
+
+    private void onSlotPrepared(Slot slot, MediaPlayer mp) {
+        if (mp != slot.player) {
+            return;
+        }
+        slot.prepared = true;
+        if (slot == current) {
+            listener.onDurationReady(mp.getDuration());
+            if (playWhenReady) {
+                mp.start();
+                listener.onPlaybackStateChanged(true);
+            }
+        }
+        chainNext();
+    }
+
+    private void onSlotCompleted(Slot slot, MediaPlayer mp) {
+        if (slot != current || mp != slot.player) {
+            return;
+        }
+        if (!slot.prepared) {
+            // 还没准备好，停在当前视频（出错时 onError 返回了 true，不会回调到这里）
+            listener.onPlaybackStateChanged(false);
+            return;
+        }
+        Slot next = findSlot(currentIndex + 1);
+        if (next != null) {
+            // 串接好的下一个已经开始播放，只需要切换画面
+            moveTo(currentIndex + 1, next.prepared);
+        } else {
+            listener.onPlaybackStateChanged(false);
+        }
+    }
+
+    private void releasePlayer(Slot slot) {
+        if (slot.player != null) {
+            slot.player.release();
+            slot.player = null;
+        }
+        slot.prepared = false;
+        slot.error = false;
+        slot.videoWidth = 0;
+        slot.videoHeight = 0;
+    }
+
+    /**
+     * TextureView 会把画面拉伸到整个视图，按视频比例缩放居中
+     */
+    private void applyFitCenter(Slot slot) {
+        int viewWidth = slot.view.getWidth();
+        int viewHeight = slot.view.getHeight();
+        if (slot.videoWidth == 0 || slot.videoHeight == 0 || viewWidth == 0 || viewHeight == 0) {
+            return;
+        }
+        float scale = Math.min((float) viewWidth / slot.videoWidth, (float) viewHeight / slot.videoHeight);
+        Matrix matrix = new Matrix();
+        matrix.setScale(slot.videoWidth * scale / viewWidth, slot.videoHeight * scale / viewHeight,
+                viewWidth / 2f, viewHeight / 2f);
+        slot.view.setTransform(matrix);
+    }
+
+    private static Uri resolveUri(Photo photo) {
+        if (photo.getUri() != null) {
+            return photo.getUri();
+        }
+        return Uri.fromFile(new File(photo.getPath()));
+    }
+}
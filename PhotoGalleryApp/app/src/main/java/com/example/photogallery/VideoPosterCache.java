@@ -0,0 +1,302 @@
+package com.example.photogallery;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 视频封面帧的磁盘缓存，网格中的视频用它代替每次从视频里取帧
+ * 每个视频只在后台取一次关键帧，缩小到最大缩略图档位保存，文件名包含媒体ID、DATE_MODIFIED和时长，
+ * 视频被修改后自动重新生成；MediaStore 没有时长时（刚录完的视频）也从这里取
+ * 取帧失败的视频按媒体ID和DATE_MODIFIED记住，视频没有变化时不再重试
+ */
+public class VideoPosterCache {
+    private static final String TAG = "VideoPosterCache";
+    private static final String CACHE_DIR = "video_posters";
+    // 封面短边的像素数，与最大的缩略图档位一致，所有档位都从它缩小
+    private static final int POSTER_SIZE = 384;
+
+    private static VideoPosterCache instance;
+
+    public interface OnPosterReadyListener {
+        void onPosterReady(long mediaId);
+    }
+
+    private static class Entry {
+        final long dateModified;
+        final long durationMs;
+        final File file;
+
+        Entry(long dateModified, long durationMs, File file) {
+            this.dateModified = dateModified;
+            this.durationMs = durationMs;
+            this.file = file;
+        }
+    }
+
+    private final Context context;
+    private final File cacheDir;
+    // 媒体ID -> 已生成的封面，目录扫描完成前为空
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<Long> generating = new HashSet<>();
+    // 媒体ID -> 取帧失败时的DATE_MODIFIED
+    private final Map<Long, Long> failed = new ConcurrentHashMap<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<OnPosterReadyListener> listeners = new CopyOnWriteArrayList<>();
+
+    private VideoPosterCache(Context context) {
+        this.context = context.getApplicationContext();
+        cacheDir = new File(this.context.getFilesDir(), CACHE_DIR);
+        // 扫描已有的封面，不阻塞调用线程
+        AppExecutors.getInstance().execute(AppExecutors.LANE_FOREGROUND, this::scanDirectory);
+    }
+
+    public static synchronized VideoPosterCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new VideoPosterCache(context);
+        }
+        return instance;
+    }
+
+    public void addOnPosterReadyListener(OnPosterReadyListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeOnPosterReadyListener(OnPosterReadyListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 获取封面文件，可以在主线程调用（只查内存）；还没有时返回null，并在后台生成，生成后在主线程通知监听者
+     * 之前取帧失败且视频没有变化时直接返回null
+     */
+    public File getPoster(Photo video) {
+        Entry entry = entries.get(video.getId());
+        if (entry != null && entry.dateModified == video.getDateModified()) {
+            return entry.file;
+        }
+        if (hasFailed(video)) {
+            return null;
+        }
+        synchronized (generating) {
+            if (!generating.add(video.getId())) {
+                return null;
+            }
+        }
+        AppExecutors.getInstance().execute(AppExecutors.LANE_BACKGROUND, () -> {
+            File poster;
+            try {
+                poster = ensurePoster(video);
+            } finally {
+                synchronized (generating) {
+                    generating.remove(video.getId());
+                }
+            }
+            if (poster != null) {
+                mainHandler.post(() -> {
+                    for (OnPosterReadyListener listener : listeners) {
+                        listener.onPosterReady(video.getId());
+                    }
+                });
+            }
+        });
+        return null;
+    }
+
+    /**
+     * 视频时长：优先用 MediaStore 的值，没有时用生成封面时读到的值
+     */
+    public long getDurationMs(Photo video) {
+        if (video.getDuration() > 0) {
+            return video.getDuration();
+        }
+        Entry entry = entries.get(video.getId());
+        return entry != null ? entry.durationMs : 0;
+    }
+
+    /**
+     * 确保封面存在，必要时生成（在后台线程调用）
+     *
+     * @return 封面文件，生成失败（包括之前已经失败过）时返回null
+     */
+    public File ensurePoster(Photo video) {
+        Entry entry = entries.get(video.getId());
+        if (entry != null && entry.dateModified == video.getDateModified() && entry.file.exists()) {
+            return entry.file;
+        }
+        if (hasFailed(video)) {
+            return null;
+        }
+        // 目录可能还没扫描完，先看磁盘上是否已有这个版本的封面
+        File existing = findOnDisk(video);
+        if (existing != null) {
+            return existing;
+        }
+
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            Uri uri = video.getUri() != null ? video.getUri() : Uri.fromFile(new File(video.getPath()));
+            retriever.setDataSource(context, uri);
+            long durationMs = video.getDuration();
+            if (durationMs <= 0) {
+                String value = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+                durationMs = value != null ? Long.parseLong(value) : 0;
+            }
+
+            // 录屏开头常常是桌面或空白，取三分之一处的关键帧
+            long timeUs = durationMs / 3 * 1000;
+            Bitmap frame;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+                frame = retriever.getScaledFrameAtTime(timeUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC,
+                        POSTER_SIZE * 4, POSTER_SIZE * 4);
+            } else {
+                frame = retriever.getFrameAtTime(timeUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+            }
+            if (frame == null) {
+                failed.put(video.getId(), video.getDateModified());
+                return null;
+            }
+            Bitmap poster = scaleToShortSide(frame, POSTER_SIZE);
+
+            File file = save(video, durationMs, poster);
+            if (poster != frame) {
+                poster.recycle();
+            }
+            frame.recycle();
+            if (file != null) {
+                entries.put(video.getId(), new Entry(video.getDateModified(), durationMs, file));
+                failed.remove(video.getId());
+            }
+            return file;
+        } catch (Exception e) {
+            Log.w(TAG, "生成视频封面失败: " + video.getName(), e);
+            failed.put(video.getId(), video.getDateModified());
+            return null;
+        } finally {
+            try {
+                retriever.release();
+            } catch (Exception e) {
+                // 忽略
+            }
+        }
+    }
+
+    /**
+     * 删除不再存在的媒体的封面
+     */
+    public void removeAll(Iterable<Long> mediaIds) {
+        for (long id : mediaIds) {
+            failed.remove(id);
+            Entry entry = entries.remove(id);
+            if (entry != null) {
+                entry.file.delete();
+            }
+        }
+    }
+
+    private boolean hasFailed(Photo video) {
+        Long dateModified = failed.get(video.getId());
+        return dateModified != null && dateModified == video.getDateModified();
+    }
+
+    private File save(Photo video, long durationMs, Bitmap poster) {
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            return null;
+        }
+        Entry old = entries.get(video.getId());
+        File file = new File(cacheDir, video.getId() + "_" + video.getDateModified() + "_" + durationMs + ".jpg");
+        File tempFile = new File(cacheDir, video.getId() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            poster.compress(Bitmap.CompressFormat.JPEG, 85, out);
+        } catch (IOException e) {
+            Log.w(TAG, "保存视频封面失败: " + video.getId(), e);
+            tempFile.delete();
+            return null;
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            return null;
+        }
+        if (old != null && !old.file.equals(file)) {
+            old.file.delete();
+        }
+        return file;
+    }
+
+    /**
+     * 在磁盘上找这个视频当前版本的封面，找到时放进内存
+     */
+    private File findOnDisk(Photo video) {
+        String prefix = video.getId() + "_" + video.getDateModified() + "_";
+        String[] names = cacheDir.list((dir, name) -> name.startsWith(prefix) && name.endsWith(".jpg"));
+        if (names == null || names.length == 0) {
+            return null;
+        }
+        try {
+            long durationMs = Long.parseLong(names[0].substring(prefix.length(), names[0].length() - 4));
+            File file = new File(cacheDir, names[0]);
+            entries.put(video.getId(), new Entry(video.getDateModified(), durationMs, file));
+            return file;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 文件名格式：媒体ID_DATE_MODIFIED_时长.jpg
+     * 临时文件（媒体ID.tmp）可能正在写入，不处理
+     */
+    private void scanDirectory() {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(".tmp")) {
+                continue;
+            }
+            if (!name.endsWith(".jpg")) {
+                file.delete();
+                continue;
+            }
+            String[] parts = name.substring(0, name.length() - 4).split("_");
+            if (parts.length != 3) {
+                file.delete();
+                continue;
+            }
+            try {
+                long id = Long.parseLong(parts[0]);
+                // 生成中的新版本优先
+                entries.putIfAbsent(id, new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2]), file));
+            } catch (NumberFormatException e) {
+                file.delete();
+            }
+        }
+        Log.d(TAG, "已有视频封面: " + entries.size());
+    }
+
+    private static Bitmap scaleToShortSide(Bitmap bitmap, int shortSide) {
+        int min = Math.min(bitmap.getWidth(), bitmap.getHeight());
+        if (min <= shortSide) {
+            return bitmap;
+        }
+        float scale = (float) shortSide / min;
+        return Bitmap.createScaledBitmap(bitmap, Math.round(bitmap.getWidth() * scale),
+                Math.round(bitmap.getHeight() * scale), true);
+    }
+}